@@ -0,0 +1,98 @@
+package pl.jakubchmura.jmeter.snmp.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.snmp4j.smi.UdpAddress;
+import pl.jakubchmura.jmeter.snmp.sampler.snmp.CorrelationKey;
+import pl.jakubchmura.jmeter.snmp.sampler.snmp.ReturnTrap;
+import pl.jakubchmura.jmeter.snmp.sampler.snmp.SnmpReceiver;
+import pl.jakubchmura.jmeter.snmp.sampler.snmp.TrapDecoder;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registering a sample and correlating its return trap, called directly on the receiver without the socket. Each
+ * thread is a sender waiting for its own return traps.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CorrelationBenchmark {
+
+    private static final int TRAPS_PER_THREAD = 1024;
+
+    @State(Scope.Benchmark)
+    public static class Receiver {
+
+        private SnmpReceiver.Flow flow;
+
+        @Setup
+        public void setUp() throws IOException {
+            flow = SnmpReceiver.acquire(new UdpAddress("127.0.0.1/0"), Traps.CORRELATION_OID);
+        }
+
+        @TearDown
+        public void tearDown() {
+            SnmpReceiver.release(flow);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Sender {
+
+        private byte[][] datagrams;
+        private CorrelationKey[] keys;
+        private int next;
+
+        @Setup
+        public void setUp(ThreadParams thread) throws IOException {
+            datagrams = Traps.datagrams("sender-" + thread.getThreadIndex() + "-", TRAPS_PER_THREAD, 10);
+            keys = new CorrelationKey[TRAPS_PER_THREAD];
+            TrapDecoder decoder = new TrapDecoder(Traps.CORRELATION_OID);
+            for (int i = 0; i < TRAPS_PER_THREAD; i++) {
+                keys[i] = TrapDecoder.valueKey(datagrams[i], decoder.findCorrelationValue(datagrams[i]));
+            }
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean correlate1(Receiver receiver, Sender sender) throws IOException {
+        return correlate(receiver, sender);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean correlate4(Receiver receiver, Sender sender) throws IOException {
+        return correlate(receiver, sender);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean correlateMax(Receiver receiver, Sender sender) throws IOException {
+        return correlate(receiver, sender);
+    }
+
+    private static boolean correlate(Receiver receiver, Sender sender) throws IOException {
+        int i = sender.next++ & (TRAPS_PER_THREAD - 1);
+        CompletableFuture<ReturnTrap> future = new CompletableFuture<>();
+        receiver.flow.addFuture(sender.keys[i], future, 60000);
+        receiver.flow.getReceiver().processDatagram(sender.datagrams[i], System.nanoTime());
+        return future.isDone();
+    }
+}
@@ -0,0 +1,71 @@
+package pl.jakubchmura.jmeter.snmp.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.snmp4j.PDU;
+import org.snmp4j.smi.OctetString;
+import org.snmp4j.smi.VariableBinding;
+import pl.jakubchmura.jmeter.snmp.sampler.snmp.CorrelationIdGenerator;
+import pl.jakubchmura.jmeter.snmp.sampler.snmp.CorrelationKey;
+import pl.jakubchmura.jmeter.snmp.sampler.snmp.TrapTemplate;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creating the correlation binding of a sample and its key, from a JMeter variable and from a
+ * {@link CorrelationIdGenerator}. A variable is the cheapest JMeter expression, functions cost more.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CorrelationValueBenchmark {
+
+    private TrapTemplate variableTemplate;
+    private TrapTemplate generatedTemplate;
+    private CorrelationIdGenerator generator;
+    private byte[] value;
+
+    @Setup
+    public void setUp() {
+        Traps.initThread("0123456789ab");
+        variableTemplate = Traps.template(2, true, null);
+        generator = new CorrelationIdGenerator();
+        generatedTemplate = TrapTemplate.compile(PDU.NOTIFICATION, false, Collections.emptyList(),
+                Traps.CORRELATION_OID, generator);
+        value = new byte[CorrelationIdGenerator.LENGTH];
+    }
+
+    @Benchmark
+    public CorrelationKey variable() throws IOException {
+        return CorrelationKey.of(variableTemplate.getBinding(1).getVariable());
+    }
+
+    @Benchmark
+    public CorrelationKey generated() {
+        VariableBinding binding = generatedTemplate.getBinding(0);
+        byte[] generated = ((OctetString) binding.getVariable()).getValue();
+        return CorrelationKey.wrap(generated, 0, generated.length);
+    }
+
+    /**
+     * The generator alone, writing to a reused array.
+     */
+    @Benchmark
+    public byte[] generateInto() {
+        generator.next(value, 0);
+        return value;
+    }
+}
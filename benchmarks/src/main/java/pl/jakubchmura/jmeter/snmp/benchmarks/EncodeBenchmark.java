@@ -0,0 +1,81 @@
+package pl.jakubchmura.jmeter.snmp.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.snmp4j.PDU;
+import org.snmp4j.asn1.BEROutputStream;
+import org.snmp4j.mp.SnmpConstants;
+import pl.jakubchmura.jmeter.snmp.sampler.snmp.TrapEncoder;
+import pl.jakubchmura.jmeter.snmp.sampler.snmp.TrapTemplate;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building a notification from its template and encoding it, through snmp4j and through {@link TrapEncoder}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class EncodeBenchmark {
+
+    @Param({"3", "10", "50"})
+    public int bindings;
+
+    @Param({"false", "true"})
+    public boolean dynamic;
+
+    private TrapTemplate template;
+    private PDU pdu;
+    private TrapEncoder encoder;
+    private ByteBuffer buffer;
+    private BEROutputStream stream;
+
+    @Setup
+    public void setUp() throws IOException {
+        Traps.initThread("4242");
+        template = Traps.template(bindings, dynamic, "4242");
+        pdu = template.createPdu();
+        encoder = new TrapEncoder(template, SnmpConstants.version2c, Traps.COMMUNITY);
+        buffer = TrapEncoder.allocateBuffer();
+        stream = new BEROutputStream(buffer);
+    }
+
+    @Benchmark
+    public PDU createPdu() {
+        return template.createPdu();
+    }
+
+    @Benchmark
+    public int encodePdu() throws IOException {
+        buffer.clear();
+        pdu.encodeBER(stream);
+        return buffer.position();
+    }
+
+    @Benchmark
+    public int createAndEncodePdu() throws IOException {
+        buffer.clear();
+        template.createPdu().encodeBER(stream);
+        return buffer.position();
+    }
+
+    @Benchmark
+    public int trapEncoder() throws IOException {
+        buffer.clear();
+        return encoder.encode(buffer);
+    }
+}
@@ -0,0 +1,113 @@
+package pl.jakubchmura.jmeter.snmp.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.snmp4j.smi.UdpAddress;
+import pl.jakubchmura.jmeter.snmp.sampler.snmp.CorrelationKey;
+import pl.jakubchmura.jmeter.snmp.sampler.snmp.ReturnTrap;
+import pl.jakubchmura.jmeter.snmp.sampler.snmp.SnmpReceiver;
+import pl.jakubchmura.jmeter.snmp.sampler.snmp.TrapDecoder;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Round trip of a trap sent over the loopback interface to the receiver, which correlates it as its own return
+ * trap: socket send and receive, hand-off to a worker, decoding and completing the waiting sample.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoopbackBenchmark {
+
+    private static final int TRAPS_PER_THREAD = 1024;
+    private static final long TIMEOUT_MILLIS = 1000;
+
+    @State(Scope.Benchmark)
+    public static class Receiver {
+
+        private SnmpReceiver.Flow flow;
+        private InetSocketAddress address;
+
+        @Setup
+        public void setUp() throws IOException {
+            int port;
+            try (DatagramChannel probe = DatagramChannel.open()) {
+                probe.bind(new InetSocketAddress("127.0.0.1", 0));
+                port = ((InetSocketAddress) probe.getLocalAddress()).getPort();
+            }
+            address = new InetSocketAddress("127.0.0.1", port);
+            flow = SnmpReceiver.acquire(new UdpAddress("127.0.0.1/" + port), Traps.CORRELATION_OID);
+        }
+
+        @TearDown
+        public void tearDown() {
+            SnmpReceiver.release(flow);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Sender {
+
+        private DatagramChannel channel;
+        private ByteBuffer[] datagrams;
+        private CorrelationKey[] keys;
+        private int next;
+
+        @Setup
+        public void setUp(Receiver receiver, ThreadParams thread) throws IOException {
+            byte[][] encoded = Traps.datagrams("sender-" + thread.getThreadIndex() + "-", TRAPS_PER_THREAD, 10);
+            datagrams = new ByteBuffer[TRAPS_PER_THREAD];
+            keys = new CorrelationKey[TRAPS_PER_THREAD];
+            TrapDecoder decoder = new TrapDecoder(Traps.CORRELATION_OID);
+            for (int i = 0; i < TRAPS_PER_THREAD; i++) {
+                datagrams[i] = ByteBuffer.wrap(encoded[i]);
+                keys[i] = TrapDecoder.valueKey(encoded[i], decoder.findCorrelationValue(encoded[i]));
+            }
+            channel = DatagramChannel.open();
+            channel.connect(receiver.address);
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            channel.close();
+        }
+    }
+
+    @Benchmark
+    public ReturnTrap roundTrip(Receiver receiver, Sender sender)
+            throws IOException, InterruptedException, ExecutionException, TimeoutException {
+        int i = sender.next++ & (TRAPS_PER_THREAD - 1);
+        CompletableFuture<ReturnTrap> future = new CompletableFuture<>();
+        CorrelationKey key = sender.keys[i];
+        receiver.flow.addFuture(key, future, TIMEOUT_MILLIS);
+        ByteBuffer datagram = sender.datagrams[i];
+        datagram.rewind();
+        sender.channel.write(datagram);
+        try {
+            return future.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // a lost datagram must not leave its key registered for when the sender comes back to it
+            receiver.flow.removeFuture(key, future);
+            throw e;
+        }
+    }
+}
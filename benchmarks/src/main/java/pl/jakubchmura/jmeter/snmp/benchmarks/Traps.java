@@ -0,0 +1,80 @@
+package pl.jakubchmura.jmeter.snmp.benchmarks;
+
+import org.apache.jmeter.threads.JMeterContextService;
+import org.apache.jmeter.threads.JMeterVariables;
+import org.apache.jmeter.util.JMeterUtils;
+import org.snmp4j.PDU;
+import org.snmp4j.mp.SnmpConstants;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.OctetString;
+import pl.jakubchmura.jmeter.snmp.sampler.snmp.TrapEncoder;
+import pl.jakubchmura.jmeter.snmp.sampler.snmp.TrapTemplate;
+import pl.jakubchmura.jmeter.snmp.sampler.util.SimpleVariableBinding;
+import pl.jakubchmura.jmeter.snmp.sampler.util.SnmpVariableType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Notifications shared by the benchmarks.
+ */
+final class Traps {
+
+    static final OID CORRELATION_OID = new OID("1.3.6.1.4.1.99999.1.1");
+    static final OctetString COMMUNITY = new OctetString("public");
+    static final String VARIABLE = "correlation";
+
+    private Traps() {
+    }
+
+    /**
+     * Sets up the JMeter variables of the calling thread, which dynamic bindings are evaluated against.
+     */
+    static void initThread(String correlationValue) {
+        JMeterUtils.setJMeterHome(System.getProperty("java.io.tmpdir"));
+        JMeterVariables variables = new JMeterVariables();
+        variables.put(VARIABLE, correlationValue);
+        JMeterContextService.getContext().setVariables(variables);
+    }
+
+    /**
+     * @param size      number of bindings including the uptime and the correlation value
+     * @param dynamic   whether the correlation value references a JMeter variable
+     */
+    static List<SimpleVariableBinding> bindings(int size, boolean dynamic, String correlationValue) {
+        List<SimpleVariableBinding> bindings = new ArrayList<>();
+        bindings.add(SimpleVariableBinding.compile(SnmpConstants.sysUpTime.toString(), "12345",
+                SnmpVariableType.TimeTicks));
+        bindings.add(SimpleVariableBinding.compile(CORRELATION_OID.toString(),
+                dynamic ? "${" + VARIABLE + "}" : correlationValue, SnmpVariableType.OctetString));
+        for (int i = 2; i < size; i++) {
+            bindings.add(SimpleVariableBinding.compile("1.3.6.1.4.1.99999.2." + i, "value of binding " + i,
+                    SnmpVariableType.OctetString));
+        }
+        return bindings;
+    }
+
+    static TrapTemplate template(int size, boolean dynamic, String correlationValue) {
+        return TrapTemplate.compile(PDU.NOTIFICATION, false, bindings(size, dynamic, correlationValue));
+    }
+
+    /**
+     * Encoded SNMPv2c notifications with the correlation values {@code prefix + i}.
+     */
+    static byte[][] datagrams(String prefix, int count, int size) throws IOException {
+        byte[][] datagrams = new byte[count][];
+        ByteBuffer buffer = TrapEncoder.allocateBuffer();
+        for (int i = 0; i < count; i++) {
+            TrapEncoder encoder = new TrapEncoder(template(size, false, prefix + i), SnmpConstants.version2c,
+                    COMMUNITY);
+            buffer.clear();
+            encoder.encode(buffer);
+            buffer.flip();
+            datagrams[i] = new byte[buffer.remaining()];
+            buffer.get(datagrams[i]);
+        }
+        return datagrams;
+    }
+}
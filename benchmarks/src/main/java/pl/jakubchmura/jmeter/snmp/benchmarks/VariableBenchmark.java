@@ -0,0 +1,95 @@
+package pl.jakubchmura.jmeter.snmp.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.snmp4j.PDU;
+import org.snmp4j.smi.Variable;
+import org.snmp4j.smi.VariableBinding;
+import pl.jakubchmura.jmeter.snmp.sampler.snmp.TrapTemplate;
+import pl.jakubchmura.jmeter.snmp.sampler.util.SimpleVariableBinding;
+import pl.jakubchmura.jmeter.snmp.sampler.util.SnmpVariableType;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creating variables from the text of the sampler and the bindings of a sample, parsed on every sample as well as
+ * taken from a compiled template.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class VariableBenchmark {
+
+    private static final String OID = "1.3.6.1.4.1.99999.1.1";
+
+    @Param({"Counter32", "Counter64", "Gauge32", "Integer32", "IpAddress", "Null", "OctetString", "OID", "Opaque",
+            "TimeTicks"})
+    public String type;
+
+    private SnmpVariableType variableType;
+    private String text;
+    private SimpleVariableBinding binding;
+    private TrapTemplate constantTemplate;
+    private TrapTemplate dynamicTemplate;
+
+    @Setup
+    public void setUp() {
+        variableType = SnmpVariableType.valueOf(type);
+        text = sampleText(variableType);
+        Traps.initThread(text);
+        binding = SimpleVariableBinding.compile(OID, text, variableType);
+        constantTemplate = TrapTemplate.compile(PDU.NOTIFICATION, false, Collections.singletonList(binding));
+        dynamicTemplate = TrapTemplate.compile(PDU.NOTIFICATION, false, Collections.singletonList(
+                SimpleVariableBinding.compile(OID, "${" + Traps.VARIABLE + "}", variableType)));
+    }
+
+    @Benchmark
+    public Variable createVariable() {
+        return variableType.createVariable(text);
+    }
+
+    /**
+     * Parses the OID and the value on every call.
+     */
+    @Benchmark
+    public VariableBinding parseBinding() {
+        return binding.toVariableBinding();
+    }
+
+    @Benchmark
+    public VariableBinding constantTemplate() {
+        return constantTemplate.getBinding(0);
+    }
+
+    @Benchmark
+    public VariableBinding dynamicTemplate() {
+        return dynamicTemplate.getBinding(0);
+    }
+
+    private static String sampleText(SnmpVariableType type) {
+        switch (type) {
+            case IpAddress:
+                return "192.168.10.20";
+            case OID:
+                return "1.3.6.1.4.1.99999.3.4.5";
+            case OctetString:
+            case Opaque:
+                return "link down on interface eth0";
+            default:
+                return "4242";
+        }
+    }
+}
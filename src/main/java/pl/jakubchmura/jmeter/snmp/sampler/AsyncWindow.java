@@ -0,0 +1,96 @@
+package pl.jakubchmura.jmeter.snmp.sampler;
+
+import org.apache.jmeter.samplers.SampleEvent;
+import org.apache.jmeter.samplers.SampleListener;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.threads.JMeterContext;
+import org.apache.jmeter.threads.JMeterContextService;
+import org.apache.jmeter.threads.JMeterThread;
+import org.apache.jmeter.threads.ListenerNotifier;
+import org.apache.jmeter.threads.SamplePackage;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounds the number of requests a sampler thread keeps in flight and reports the result of each one to the sample
+ * listeners of the sampler as soon as it completes, on the thread completing it. Assertions and post-processors are
+ * not applied to these results.
+ */
+public class AsyncWindow {
+
+    private final int size;
+    private final Semaphore permits;
+    private ListenerNotifier notifier;
+    private List<SampleListener> listeners;
+
+    public AsyncWindow(int size) {
+        this.size = size;
+        this.permits = new Semaphore(size);
+    }
+
+    public boolean acquire(long timeoutMillis) throws InterruptedException {
+        return permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    /**
+     * Prepares the event reporting a request sent by the calling JMeter thread, taking the thread name, the thread
+     * counts and the sample variables at sending time.
+     */
+    public SampleEvent createEvent(SampleResult result) {
+        JMeterContext context = JMeterContextService.getContext();
+        if (listeners == null) {
+            JMeterThread thread = context.getThread();
+            SamplePackage pack = (SamplePackage) context.getVariables().getObject(JMeterThread.PACKAGE_OBJECT);
+            notifier = thread != null ? thread.getNotifier() : new ListenerNotifier();
+            listeners = pack != null ? pack.getSampleListeners() : Collections.<SampleListener>emptyList();
+        }
+        String threadGroup = "";
+        if (context.getThreadGroup() != null) {
+            threadGroup = context.getThreadGroup().getName();
+            result.setGroupThreads(context.getThreadGroup().getNumberOfThreads());
+        }
+        if (context.getThread() != null) {
+            result.setThreadName(context.getThread().getThreadName());
+        }
+        result.setAllThreads(JMeterContextService.getNumberOfThreads());
+        return new SampleEvent(result, threadGroup, context.getVariables());
+    }
+
+    /**
+     * Reports the completed request and frees its slot.
+     */
+    public void complete(SampleEvent event) {
+        try {
+            // listeners cloned for the sampler thread expect one caller at a time
+            synchronized (this) {
+                notifier.notifyListeners(event, listeners);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Waits until no request is in flight.
+     *
+     * @return false if requests are still in flight after the timeout
+     */
+    public boolean awaitIdle(long timeoutMillis) throws InterruptedException {
+        if (!permits.tryAcquire(size, timeoutMillis, TimeUnit.MILLISECONDS)) {
+            return false;
+        }
+        permits.release(size);
+        return true;
+    }
+
+    public int getInFlight() {
+        return size - permits.availablePermits();
+    }
+}
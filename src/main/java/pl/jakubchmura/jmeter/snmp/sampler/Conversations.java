@@ -0,0 +1,28 @@
+package pl.jakubchmura.jmeter.snmp.sampler;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Threads running the blocking send and await cycles of conversations. This version starts a platform thread per
+ * concurrent conversation, the multi-release jar replaces it on Java 21 and later by one using virtual threads.
+ */
+public final class Conversations {
+
+    private Conversations() {
+    }
+
+    public static boolean isVirtual() {
+        return false;
+    }
+
+    public static ExecutorService newExecutor(String name) {
+        AtomicInteger number = new AtomicInteger();
+        return Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, name + "-" + number.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -1,33 +1,63 @@
 package pl.jakubchmura.jmeter.snmp.sampler;
 
+import org.apache.jmeter.engine.util.CompoundVariable;
 import org.apache.jmeter.samplers.AbstractSampler;
 import org.apache.jmeter.samplers.Entry;
+import org.apache.jmeter.samplers.SampleEvent;
 import org.apache.jmeter.samplers.SampleResult;
 import org.apache.jmeter.testelement.ThreadListener;
 import org.apache.jmeter.testelement.property.CollectionProperty;
+import org.apache.jmeter.testelement.property.FunctionProperty;
 import org.apache.jmeter.testelement.property.JMeterProperty;
-import org.apache.jmeter.testelement.property.TestElementProperty;
+import org.apache.jmeter.util.JMeterUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.snmp4j.AbstractTarget;
 import org.snmp4j.CommunityTarget;
 import org.snmp4j.PDU;
 import org.snmp4j.Snmp;
+import org.snmp4j.UserTarget;
 import org.snmp4j.mp.SnmpConstants;
+import org.snmp4j.security.SecurityLevel;
+import org.snmp4j.security.UsmUser;
 import org.snmp4j.smi.*;
-import org.snmp4j.transport.DefaultUdpTransportMapping;
+import pl.jakubchmura.jmeter.snmp.sampler.snmp.CorrelationIdGenerator;
+import pl.jakubchmura.jmeter.snmp.sampler.snmp.CorrelationKey;
+import pl.jakubchmura.jmeter.snmp.sampler.snmp.CorrelationTable;
+import pl.jakubchmura.jmeter.snmp.sampler.snmp.PayloadTracer;
+import pl.jakubchmura.jmeter.snmp.sampler.snmp.RequestSender;
+import pl.jakubchmura.jmeter.snmp.sampler.snmp.ReturnTrap;
+import pl.jakubchmura.jmeter.snmp.sampler.snmp.SnmpMetrics;
 import pl.jakubchmura.jmeter.snmp.sampler.snmp.SnmpReceiver;
+import pl.jakubchmura.jmeter.snmp.sampler.snmp.SnmpTransportPool;
+import pl.jakubchmura.jmeter.snmp.sampler.snmp.TableWalker;
+import pl.jakubchmura.jmeter.snmp.sampler.snmp.TrapCorpus;
+import pl.jakubchmura.jmeter.snmp.sampler.snmp.TrapEncoder;
+import pl.jakubchmura.jmeter.snmp.sampler.snmp.TrapTemplate;
+import pl.jakubchmura.jmeter.snmp.sampler.snmp.UsmSecurity;
+import pl.jakubchmura.jmeter.snmp.sampler.util.AuthProtocol;
 import pl.jakubchmura.jmeter.snmp.sampler.util.CommunicationStyle;
+import pl.jakubchmura.jmeter.snmp.sampler.util.PrivProtocol;
 import pl.jakubchmura.jmeter.snmp.sampler.util.SimpleVariableBinding;
-import pl.jakubchmura.jmeter.snmp.sampler.util.SnmpVariableType;
+import pl.jakubchmura.jmeter.snmp.sampler.util.SnmpVersion;
+import pl.jakubchmura.jmeter.snmp.sampler.util.VarbindBlock;
 
 import java.io.IOException;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
 
 public class SnmpSampler extends AbstractSampler implements ThreadListener {
 
@@ -40,50 +70,341 @@ public class SnmpSampler extends AbstractSampler implements ThreadListener {
     public static final String CORRELATION_OID = "SnmpSampler.correlationOid";
     public static final String TIMEOUT = "SnmpSampler.timeout";
     public static final String VARBINDS = "SnmpSampler.varbinds";
+    public static final String VARBINDS_BLOCK = "SnmpSampler.varbindsBlock";
+    public static final String VARBINDS_FILE = "SnmpSampler.varbindsFile";
+    public static final String PRE_ENCODED = "SnmpSampler.preEncoded";
+    public static final String ASYNC = "SnmpSampler.async";
+    public static final String WINDOW = "SnmpSampler.window";
+    public static final String STORE_RESPONSE = "SnmpSampler.storeResponse";
+    public static final String BATCH_SIZE = "SnmpSampler.batchSize";
+    public static final String RETRIES = "SnmpSampler.retries";
+    public static final String NON_REPEATERS = "SnmpSampler.nonRepeaters";
+    public static final String MAX_REPETITIONS = "SnmpSampler.maxRepetitions";
+    public static final String WALK_PIPELINES = "SnmpSampler.walkPipelines";
+    public static final String SNMP_VERSION = "SnmpSampler.version";
+    public static final String SECURITY_NAME = "SnmpSampler.securityName";
+    public static final String AUTH_PROTOCOL = "SnmpSampler.authProtocol";
+    public static final String AUTH_PASSPHRASE = "SnmpSampler.authPassphrase";
+    public static final String PRIV_PROTOCOL = "SnmpSampler.privProtocol";
+    public static final String PRIV_PASSPHRASE = "SnmpSampler.privPassphrase";
+    public static final String ENGINE_ID = "SnmpSampler.engineId";
+    public static final String REPLAY_FILE = "SnmpSampler.replayFile";
+    public static final String REPLAY_SPEED = "SnmpSampler.replaySpeed";
+    public static final String CONVERSATIONS = "SnmpSampler.conversations";
+    public static final String GENERATE_CORRELATION_VALUES = "SnmpSampler.generateCorrelationValues";
+
+    private static final int DEFAULT_WINDOW = 1000;
+    private static final int BATCH_BUFFER_MESSAGES = 16;
+    private static final int DEFAULT_MAX_REPETITIONS = 10;
+    private static final int DEFAULT_WALK_PIPELINES = 4;
+    private static final long SPIN_NANOS = 50_000;
 
     private static final Logger log = LoggerFactory.getLogger(SnmpSampler.class);
 
     private CommunicationStyle communicationStyle;
+    private SnmpVersion snmpVersion;
     private OID correlationOid;
     private Snmp snmp;
-    private SnmpReceiver snmpReceiver;
+    private SnmpReceiver.Flow receiverFlow;
+    private TrapTemplate trapTemplate;
+    private String setupError;
+    private AbstractTarget target;
+    private TrapEncoder trapEncoder;
+    private ByteBuffer sendBuffer;
+    private DatagramChannel channel;
+    private InetSocketAddress destination;
+    private int batchSize;
+    private int[] batchEnds;
+    private long timeout;
+    private AsyncWindow asyncWindow;
+    private boolean storeResponse;
+    private int retries;
+    private int nonRepeaters;
+    private int maxRepetitions;
+    private RequestSender requestSender;
+    private TableWalker tableWalker;
+    private TrapCorpus.Cursor replayCursor;
+    private double replaySpeed;
+    private long replayStart;
+    private long replayBase;
+    private int conversations;
+    private ExecutorService conversationExecutor;
 
     public SampleResult sample(Entry e) {
+        if (setupError != null) {
+            SampleResult res = new SampleResult();
+            res.setSampleLabel(getLabel());
+            res.setSuccessful(false);
+            res.setResponseMessage(setupError);
+            return res;
+        }
+        if (communicationStyle == CommunicationStyle.Replay) {
+            return sampleReplay();
+        }
+        if (tableWalker != null) {
+            return sampleWalk();
+        }
+        if (asyncWindow != null) {
+            return sampleAsync();
+        }
+        if (conversationExecutor != null) {
+            return sampleConversations();
+        }
+        if (communicationStyle.isConfirmed()) {
+            return sampleRequest();
+        }
 
         SampleResult res = new SampleResult();
-        res.setSampleLabel("SNMP Trap - " + communicationStyle);
+        res.setSampleLabel(getLabel());
         res.setSuccessful(false);
         res.sampleStart();
         try {
-            PDU pdu = new PDU();
-            pdu.setType(PDU.NOTIFICATION);
-            pdu.addAll(getVariableBinding());
-            log.info("Sending trap: " + pdu);
-
-            CommunityTarget target = new CommunityTarget();
-            target.setVersion(SnmpConstants.version2c);
-            target.setCommunity(getCommunity());
-            target.setAddress(getAddress());
-
-            if (communicationStyle == CommunicationStyle.RequestOnly) {
+            if (batchSize > 1) {
+                sendBatch(res);
+            } else if (trapEncoder != null) {
+                res.setSentBytes(sendEncoded());
+                res.setResponseOK();
+            } else if (communicationStyle == CommunicationStyle.RequestOnly) {
+                PDU pdu = trapTemplate.createPdu();
+                PayloadTracer.sent().trace(pdu);
                 snmp.notify(pdu, target);
                 res.setSentBytes(pdu.getBERLength());
                 res.setResponseOK();
             } else {
-                String value = getCorrelationValue(pdu);
-                CompletableFuture<PDU> future = new CompletableFuture<>();
-                snmpReceiver.addFuture(value, future);
-                snmp.notify(pdu, target);
-                res.setSentBytes(pdu.getBERLength());
+                PDU pdu = trapTemplate.createPdu();
+                PayloadTracer.sent().trace(pdu);
+                sendAndAwait(res, pdu);
+            }
+        } catch (Exception ex) {
+            log.warn("", ex);
+            res.setResponseMessage(ex.getLocalizedMessage());
+        }
+        res.sampleEnd();
+
+        return res;
+    }
+
+    private void sendAndAwait(SampleResult res, PDU pdu) throws IOException, InterruptedException {
+        CorrelationKey value = getCorrelationValue(pdu);
+        CompletableFuture<ReturnTrap> future = new CompletableFuture<>();
+        long sent = System.nanoTime();
+        receiverFlow.addFuture(value, future, timeout);
+        snmp.notify(pdu, target);
+        res.setSentBytes(pdu.getBERLength());
+        try {
+            ReturnTrap response = future.get(timeout, TimeUnit.MILLISECONDS);
+            SnmpMetrics.getInstance().recordSendToReceive(response.getReceivedNanos() - sent);
+            setResponse(res, response);
+        } catch (TimeoutException e1) {
+            if (receiverFlow.removeFuture(value, future)) {
+                SnmpMetrics.getInstance().timeouts(1);
+            }
+            traceTimeout(value);
+            res.setResponseMessage("Timeout occurred while waiting for incoming trap");
+        } catch (CancellationException e1) {
+            setWaitError(res, value, e1);
+        } catch (ExecutionException e1) {
+            setWaitError(res, value, e1.getCause());
+        }
+    }
+
+    /**
+     * Runs several send and await cycles at once, each blocking its own thread. The PDUs are created on the sampler
+     * thread, where JMeter functions and variables are evaluated.
+     */
+    private SampleResult sampleConversations() {
+        SampleResult res = new SampleResult();
+        res.setSampleLabel(getLabel());
+        res.setSuccessful(false);
+        List<Future<SampleResult>> results = new ArrayList<>(conversations);
+        res.sampleStart();
+        try {
+            for (int i = 0; i < conversations; i++) {
+                PDU pdu = trapTemplate.createPdu();
+                PayloadTracer.sent().trace(pdu);
+                results.add(conversationExecutor.submit(() -> converse(pdu)));
+            }
+            long sentBytes = 0;
+            long bytes = 0;
+            int errors = 0;
+            String error = null;
+            for (Future<SampleResult> result : results) {
+                SampleResult conversation = result.get();
+                sentBytes += conversation.getSentBytes();
+                bytes += conversation.getBytesAsLong();
+                if (!conversation.isSuccessful()) {
+                    errors++;
+                    error = conversation.getResponseMessage();
+                }
+            }
+            res.setSampleCount(conversations);
+            res.setErrorCount(errors);
+            res.setSentBytes(sentBytes);
+            res.setBytes(bytes);
+            if (errors == 0) {
+                res.setResponseOK();
+            } else {
+                res.setResponseMessage(errors + " of " + conversations + " conversations failed, last error: " + error);
+            }
+        } catch (Exception ex) {
+            for (Future<SampleResult> result : results) {
+                result.cancel(true);
+            }
+            log.warn("", ex);
+            res.setResponseMessage(ex.getLocalizedMessage());
+        }
+        res.sampleEnd();
+
+        return res;
+    }
+
+    private SampleResult converse(PDU pdu) {
+        SampleResult res = new SampleResult();
+        res.setSuccessful(false);
+        try {
+            sendAndAwait(res, pdu);
+        } catch (Exception ex) {
+            res.setResponseMessage(ex.getLocalizedMessage());
+        }
+        return res;
+    }
+
+    private SampleResult sampleRequest() {
+        SampleResult res = new SampleResult();
+        res.setSampleLabel(getLabel());
+        res.setSuccessful(false);
+        res.sampleStart();
+        try {
+            sendRequest(res).get();
+        } catch (Exception ex) {
+            log.warn("", ex);
+            res.setResponseMessage(ex.getLocalizedMessage());
+        }
+        if (res.getEndTime() == 0) {
+            res.sampleEnd();
+        }
+
+        return res;
+    }
+
+    private SampleResult sampleReplay() {
+        SampleResult res = new SampleResult();
+        res.setSampleLabel(getLabel());
+        res.setSuccessful(false);
+        if (replayCursor == null) {
+            res.setResponseMessage("Trap corpus is not open");
+            return res;
+        }
+        if (replaySpeed > 0) {
+            awaitReplayTime(replayCursor.getIndex());
+        }
+        res.sampleStart();
+        try {
+            ByteBuffer trap = replayCursor.next();
+            PayloadTracer.sent().traceCopy(trap);
+            res.setSentBytes(channel.send(trap, destination));
+            res.setResponseOK();
+        } catch (Exception ex) {
+            log.warn("", ex);
+            res.setResponseMessage(ex.getLocalizedMessage());
+        }
+        res.sampleEnd();
+
+        return res;
+    }
+
+    private void awaitReplayTime(int index) {
+        long timestamp = replayCursor.getCorpus().getTimestamp(index);
+        if (replayStart == 0 || index == 0) {
+            replayStart = System.nanoTime();
+            replayBase = timestamp;
+        }
+        long due = replayStart + (long) ((timestamp - replayBase) / replaySpeed);
+        long remaining;
+        while ((remaining = due - System.nanoTime()) > 0 && !Thread.currentThread().isInterrupted()) {
+            if (remaining > SPIN_NANOS) {
+                LockSupport.parkNanos(remaining - SPIN_NANOS);
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+
+    private SampleResult sampleWalk() {
+        SampleResult res = new SampleResult();
+        res.setSampleLabel(getLabel());
+        res.setSuccessful(false);
+        List<OID> roots = new ArrayList<>();
+        for (VariableBinding binding : trapTemplate.createPdu().getVariableBindings()) {
+            roots.add(binding.getOid());
+        }
+        StringBuilder data = storeResponse ? new StringBuilder() : null;
+        res.sampleStart();
+        try {
+            TableWalker.Result walk = tableWalker.walk(roots,
+                    data == null ? null : binding -> data.append(binding).append('\n'), getAttemptsTimeout());
+            res.sampleEnd();
+            res.setBytes(walk.getBytes());
+            res.setResponseMessage(getWalkSummary(walk, res.getTime()));
+            if (walk.getErrors() == 0) {
+                res.setSuccessful(true);
+                res.setResponseCodeOK();
+            } else {
+                res.setResponseCode(Long.toString(walk.getErrors()));
+            }
+            if (data != null) {
+                res.setResponseData(data.toString(), null);
+                res.setDataType(SampleResult.TEXT);
+            }
+        } catch (Exception ex) {
+            log.warn("", ex);
+            res.setResponseMessage(ex.getLocalizedMessage());
+        }
+        if (res.getEndTime() == 0) {
+            res.sampleEnd();
+        }
+
+        return res;
+    }
+
+    private static String getWalkSummary(TableWalker.Result walk, long millis) {
+        String summary = walk.getRows() + " rows (" + walk.getVarbinds() + " varbinds) in " + millis + " ms, "
+                + (millis == 0 ? walk.getRows() : walk.getRows() * 1000 / millis) + " rows/s, "
+                + walk.getRequests() + " requests, latency min/avg/max "
+                + TimeUnit.NANOSECONDS.toMillis(walk.getMinLatencyNanos()) + "/"
+                + TimeUnit.NANOSECONDS.toMillis(walk.getAvgLatencyNanos()) + "/"
+                + TimeUnit.NANOSECONDS.toMillis(walk.getMaxLatencyNanos()) + " ms";
+        if (walk.getErrors() > 0) {
+            summary += ", " + walk.getErrors() + " failed requests, last error: " + walk.getLastError();
+        }
+        return summary;
+    }
+
+    private SampleResult sampleAsync() {
+        SampleResult res = new SampleResult();
+        res.setSampleLabel(getLabel() + " send");
+        res.setSuccessful(false);
+        res.sampleStart();
+        try {
+            if (asyncWindow.acquire(getAttemptsTimeout())) {
+                SampleResult pending = new SampleResult();
+                pending.setSampleLabel(getLabel());
+                pending.setSuccessful(false);
+                SampleEvent event = asyncWindow.createEvent(pending);
+                pending.sampleStart();
                 try {
-                    PDU response = future.get(getPropertyAsLong(TIMEOUT), TimeUnit.MILLISECONDS);
-                    log.debug("Received matching return trap");
+                    CompletableFuture<Void> future = communicationStyle.isConfirmed()
+                            ? sendRequest(pending)
+                            : sendCorrelatedTrap(pending);
+                    future.whenComplete((v, error) -> asyncWindow.complete(event));
+                    res.setSentBytes(pending.getSentBytes());
                     res.setResponseOK();
-                    res.setBytes((long) response.getBERLength());
-                } catch (TimeoutException e1) {
-                    log.warn("Timeout occurred while waiting for incoming trap with value " + value, e1);
-                    res.setResponseMessage("Timeout occurred while waiting for incoming trap");
+                } catch (Exception ex) {
+                    asyncWindow.release();
+                    throw ex;
                 }
+            } else {
+                res.setResponseMessage("No free slot in the window of " + asyncWindow.getInFlight() + " requests in flight");
             }
         } catch (Exception ex) {
             log.warn("", ex);
@@ -94,24 +415,268 @@ public class SnmpSampler extends AbstractSampler implements ThreadListener {
         return res;
     }
 
-    private List<VariableBinding> getVariableBinding() {
-        List<VariableBinding> list = new ArrayList<>();
-        JMeterProperty property = getProperty(SnmpSampler.VARBINDS);
-        if (property instanceof CollectionProperty) {
-            CollectionProperty collection = (CollectionProperty) property;
-            List<TestElementProperty> testElementProperties = (List<TestElementProperty>) collection.getObjectValue();
-            for (TestElementProperty testElementProperty : testElementProperties) {
-                SimpleVariableBinding simple = (SimpleVariableBinding) testElementProperty.getElement();
-                OID oid = new OID(simple.getOid());
-                String value = simple.getValue();
-                SnmpVariableType type = simple.getType();
-                list.add(new VariableBinding(oid, type.createVariable(value)));
+    private CompletableFuture<Void> sendCorrelatedTrap(SampleResult res) throws IOException {
+        PDU pdu = trapTemplate.createPdu();
+        PayloadTracer.sent().trace(pdu);
+        CorrelationKey value = getCorrelationValue(pdu);
+        CompletableFuture<ReturnTrap> future = new CompletableFuture<>();
+        long sent = System.nanoTime();
+        CompletableFuture<Void> completion = future.handle((response, error) -> {
+            res.sampleEnd();
+            if (error == null) {
+                SnmpMetrics.getInstance().recordSendToReceive(response.getReceivedNanos() - sent);
+                setResponse(res, response);
+            } else {
+                setWaitError(res, value, error);
+            }
+            return null;
+        });
+        receiverFlow.addFuture(value, future, timeout);
+        snmp.notify(pdu, target);
+        res.setSentBytes(pdu.getBERLength());
+        return completion;
+    }
+
+    private CompletableFuture<Void> sendRequest(SampleResult res) throws IOException {
+        PDU pdu = trapTemplate.createPdu();
+        if (communicationStyle == CommunicationStyle.GetBulk) {
+            pdu.setNonRepeaters(nonRepeaters);
+            pdu.setMaxRepetitions(maxRepetitions);
+        }
+        PayloadTracer.sent().trace(pdu);
+        long sent = System.nanoTime();
+        RequestSender.Exchange exchange = requestSender.send(pdu);
+        int outstanding = requestSender.getOutstanding();
+        CompletableFuture<Void> completion = exchange.handle((response, error) -> {
+            res.sampleEnd();
+            if (error == null) {
+                SnmpMetrics.getInstance().recordResponse(System.nanoTime() - sent);
+                setResponse(res, response);
+            } else {
+                if (log.isDebugEnabled()) {
+                    log.debug(communicationStyle.getName() + " request failed", error);
+                }
+                PayloadTracer.dump("Request failed: ", error);
+                res.setResponseMessage(error.getLocalizedMessage());
+            }
+            res.setResponseMessage(res.getResponseMessage() + " (retransmissions: " + exchange.getRetransmissions()
+                    + ", outstanding when sent: " + outstanding + ")");
+            return null;
+        });
+        res.setSentBytes(pdu.getBERLength());
+        return completion;
+    }
+
+    private void setResponse(SampleResult res, ReturnTrap response) {
+        res.setResponseOK();
+        res.setBytes((long) response.getLength());
+        if (storeResponse) {
+            try {
+                res.setResponseData(response.getPdu().toString(), null);
+                res.setDataType(SampleResult.TEXT);
+            } catch (IOException e) {
+                res.setSuccessful(false);
+                res.setResponseMessage("Cannot decode return trap: " + e.getLocalizedMessage());
+            }
+        }
+    }
+
+    private void setResponse(SampleResult res, PDU response) {
+        res.setBytes((long) response.getBERLength());
+        if (response.getErrorStatus() == PDU.noError) {
+            res.setResponseOK();
+        } else {
+            res.setResponseCode(Integer.toString(response.getErrorStatus()));
+            res.setResponseMessage(response.getErrorStatusText() + " at index " + response.getErrorIndex());
+        }
+        if (storeResponse) {
+            StringBuilder data = new StringBuilder();
+            for (VariableBinding binding : response.getVariableBindings()) {
+                data.append(binding).append('\n');
+            }
+            res.setResponseData(data.toString(), null);
+            res.setDataType(SampleResult.TEXT);
+        }
+    }
+
+    private static void setWaitError(SampleResult res, CorrelationKey value, Throwable error) {
+        if (error instanceof CancellationException) {
+            // the listener was released, e.g. at the end of the test
+            res.setResponseMessage(error.getLocalizedMessage());
+            return;
+        }
+        traceTimeout(value);
+        res.setResponseMessage("Timeout occurred while waiting for incoming trap");
+    }
+
+    private static void traceTimeout(CorrelationKey value) {
+        if (log.isDebugEnabled()) {
+            log.debug("Timeout occurred while waiting for incoming trap with value " + value);
+        }
+        PayloadTracer.dump("Timeout occurred while waiting for incoming trap with value ", value);
+    }
+
+    /**
+     * Number of traps a sample sends, more than one for batches and conversations.
+     */
+    protected int getTrapsPerSample() {
+        return Math.max(1, batchSize) * (conversationExecutor != null ? conversations : 1);
+    }
+
+    private String getLabel() {
+        if (communicationStyle.isConfirmed()) {
+            return "SNMP " + communicationStyle.getName();
+        }
+        return "SNMP Trap - " + communicationStyle;
+    }
+
+    private long getAttemptsTimeout() {
+        return communicationStyle.isConfirmed() ? timeout * (retries + 1) : timeout;
+    }
+
+    private int sendEncoded() throws IOException {
+        sendBuffer.clear();
+        trapEncoder.encode(sendBuffer);
+        sendBuffer.flip();
+        PayloadTracer.sent().traceCopy(sendBuffer);
+        return channel.send(sendBuffer, destination);
+    }
+
+    private void sendBatch(SampleResult res) {
+        long bytes = 0;
+        int errors = 0;
+        String error = null;
+        int sent = 0;
+        while (sent + errors < batchSize) {
+            sendBuffer.clear();
+            int queued = 0;
+            while (sent + errors + queued < batchSize && sendBuffer.remaining() >= TrapEncoder.MAX_MESSAGE_SIZE) {
+                int mark = sendBuffer.position();
+                try {
+                    trapEncoder.encode(sendBuffer);
+                    batchEnds[queued++] = sendBuffer.position();
+                } catch (IOException | RuntimeException ex) {
+                    sendBuffer.position(mark);
+                    errors++;
+                    error = ex.toString();
+                }
             }
+            int start = 0;
+            for (int i = 0; i < queued; i++) {
+                sendBuffer.limit(batchEnds[i]).position(start);
+                PayloadTracer.sent().traceCopy(sendBuffer);
+                try {
+                    bytes += channel.send(sendBuffer, destination);
+                    sent++;
+                } catch (IOException ex) {
+                    errors++;
+                    error = ex.toString();
+                }
+                sendBuffer.limit(sendBuffer.capacity());
+                start = batchEnds[i];
+            }
+        }
+        res.setSampleCount(batchSize);
+        res.setErrorCount(errors);
+        res.setSentBytes(bytes);
+        if (errors == 0) {
+            res.setResponseOK();
+        } else {
+            SnmpMetrics.getInstance().sendFailures(errors);
+            res.setResponseMessage(errors + " of " + batchSize + " traps failed, last error: " + error);
+        }
+    }
+
+    private AbstractTarget createTarget() throws UnknownHostException {
+        if (snmpVersion == SnmpVersion.V3) {
+            UserTarget target = new UserTarget();
+            target.setVersion(SnmpConstants.version3);
+            target.setSecurityName(getSecurityName());
+            target.setSecurityLevel(getSecurityLevel());
+            target.setAddress(getAddress());
+            return target;
+        }
+        CommunityTarget target = new CommunityTarget();
+        target.setVersion(SnmpConstants.version2c);
+        target.setCommunity(getCommunity());
+        target.setAddress(getAddress());
+        return target;
+    }
+
+    private void setUpUsm() throws IOException {
+        UsmSecurity.register(snmp);
+        OctetString engineId;
+        if (!communicationStyle.isConfirmed()) {
+            engineId = UsmSecurity.getLocalEngineId();
+        } else if (!getPropertyAsString(ENGINE_ID).isEmpty()) {
+            engineId = OctetString.fromHexString(getPropertyAsString(ENGINE_ID));
+        } else {
+            engineId = UsmSecurity.getEngineId(snmp, target.getAddress(), Math.max(1, getPropertyAsLong(TIMEOUT)));
         }
-        return list;
+        ((UserTarget) target).setAuthoritativeEngineID(engineId.getValue());
+        UsmSecurity.addUser(createUser(), engineId);
     }
 
-    private Address getAddress() throws UnknownHostException {
+    private UsmUser createUser() {
+        AuthProtocol authProtocol = getAuthProtocol();
+        PrivProtocol privProtocol = getPrivProtocol();
+        return new UsmUser(getSecurityName(),
+                authProtocol.getId(),
+                authProtocol == AuthProtocol.None ? null : new OctetString(getPropertyAsString(AUTH_PASSPHRASE)),
+                privProtocol.getId(),
+                privProtocol == PrivProtocol.None ? null : new OctetString(getPropertyAsString(PRIV_PASSPHRASE)));
+    }
+
+    private int getSecurityLevel() {
+        if (getAuthProtocol() == AuthProtocol.None) {
+            return SecurityLevel.NOAUTH_NOPRIV;
+        }
+        return getPrivProtocol() == PrivProtocol.None ? SecurityLevel.AUTH_NOPRIV : SecurityLevel.AUTH_PRIV;
+    }
+
+    private OctetString getSecurityName() {
+        return new OctetString(getPropertyAsString(SECURITY_NAME));
+    }
+
+    private AuthProtocol getAuthProtocol() {
+        String name = getPropertyAsString(AUTH_PROTOCOL);
+        return name.isEmpty() ? AuthProtocol.None : AuthProtocol.fromName(name);
+    }
+
+    private PrivProtocol getPrivProtocol() {
+        String name = getPropertyAsString(PRIV_PROTOCOL);
+        return name.isEmpty() ? PrivProtocol.None : PrivProtocol.fromName(name);
+    }
+
+    /**
+     * Bindings of the legacy table property, followed by the compact block and the bindings file.
+     */
+    private List<SimpleVariableBinding> getVariableBindings() throws IOException {
+        List<SimpleVariableBinding> bindings = new ArrayList<>();
+        JMeterProperty legacy = getProperty(VARBINDS);
+        if (legacy instanceof CollectionProperty) {
+            for (JMeterProperty property : (CollectionProperty) legacy) {
+                bindings.add((SimpleVariableBinding) property.getObjectValue());
+            }
+        }
+        JMeterProperty block = getProperty(VARBINDS_BLOCK);
+        String text = block instanceof FunctionProperty
+                ? ((CompoundVariable) block.getObjectValue()).getRawParameters()
+                : block.getStringValue();
+        bindings.addAll(VarbindBlock.toBindings(VarbindBlock.parse(text)));
+        String file = getPropertyAsString(VARBINDS_FILE);
+        if (!file.isEmpty()) {
+            bindings.addAll(VarbindBlock.toBindings(VarbindBlock.read(file)));
+        }
+        return bindings;
+    }
+
+    private SnmpVersion getSnmpVersion() {
+        String name = getPropertyAsString(SNMP_VERSION);
+        return name.isEmpty() ? SnmpVersion.V2c : SnmpVersion.fromName(name);
+    }
+
+    private UdpAddress getAddress() throws UnknownHostException {
         InetAddress host = InetAddress.getByName(getPropertyAsString(DESTINATION_IP));
         int port = getPropertyAsInt(DESTINATION_PORT);
         return new UdpAddress(host, port);
@@ -125,7 +690,7 @@ public class SnmpSampler extends AbstractSampler implements ThreadListener {
         return CommunicationStyle.fromName(getPropertyAsString(COMMUNICATION_STYLE));
     }
 
-    private Address getListeningAddress() throws UnknownHostException {
+    private UdpAddress getListeningAddress() throws UnknownHostException {
         InetAddress host = InetAddress.getByName(getPropertyAsString(LISTENING_IP));
         int port = getPropertyAsInt(LISTENING_PORT);
         return new UdpAddress(host, port);
@@ -135,39 +700,173 @@ public class SnmpSampler extends AbstractSampler implements ThreadListener {
         return new OID(getPropertyAsString(CORRELATION_OID));
     }
 
-    private String getCorrelationValue(PDU pdu) {
+    private CorrelationKey getCorrelationValue(PDU pdu) throws IOException {
         Variable variable = pdu.getVariable(correlationOid);
-        return variable.toString();
+        if (variable == null) {
+            throw new IllegalStateException("Trap does not contain the correlation OID " + correlationOid);
+        }
+        if (variable instanceof OctetString) {
+            // the content octets are the value itself, no need to encode it
+            byte[] value = ((OctetString) variable).getValue();
+            return CorrelationKey.wrap(value, 0, value.length);
+        }
+        return CorrelationKey.of(variable);
     }
 
     @Override
     public void threadStarted() {
         log.info("Thread started");
+        setupError = null;
         communicationStyle = getCommunicationStyle();
+        snmpVersion = getSnmpVersion();
+        try {
+            if (communicationStyle == CommunicationStyle.RequestResponse
+                    && getPropertyAsBoolean(GENERATE_CORRELATION_VALUES)) {
+                trapTemplate = TrapTemplate.compile(communicationStyle.getPduType(), snmpVersion == SnmpVersion.V3,
+                        getVariableBindings(), getCorrelationOid(), new CorrelationIdGenerator());
+            } else {
+                trapTemplate = TrapTemplate.compile(communicationStyle.getPduType(), snmpVersion == SnmpVersion.V3,
+                        getVariableBindings());
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("Read variable bindings", e);
+            // samples fail rather than sending notifications without bindings
+            trapTemplate = null;
+            setupError = "Invalid variable bindings: " + e.getLocalizedMessage();
+        }
         try {
-            snmp = new Snmp(new DefaultUdpTransportMapping());
+            target = createTarget();
+        } catch (UnknownHostException e) {
+            log.error("Resolve destination address", e);
+        }
+        try {
+            SnmpTransportPool.Transport transport = SnmpTransportPool.acquire().select();
+            snmp = transport.getSnmp();
+            channel = transport.getChannel();
         } catch (IOException e) {
             log.error("Open SNMP Sender", e);
         }
+        if (snmpVersion == SnmpVersion.V3 && snmp != null && target != null) {
+            try {
+                setUpUsm();
+            } catch (IOException | RuntimeException e) {
+                log.error("Set up SNMPv3 user", e);
+                setupError = "SNMPv3 user: " + e.getLocalizedMessage();
+            }
+        }
+        if (communicationStyle == CommunicationStyle.RequestOnly) {
+            batchSize = Math.max(1, getPropertyAsInt(BATCH_SIZE, 1));
+        }
+        if (communicationStyle == CommunicationStyle.RequestOnly && snmpVersion == SnmpVersion.V3
+                && (getPropertyAsBoolean(PRE_ENCODED) || batchSize > 1)) {
+            log.warn("Pre-encoded and batched sending are not available for SNMPv3, sending one trap per sample");
+            batchSize = 1;
+        }
+        if (communicationStyle == CommunicationStyle.Replay && target != null) {
+            try {
+                replayCursor = TrapCorpus.acquire(getPropertyAsString(REPLAY_FILE)).cursor();
+                replaySpeed = getPropertyAsString(REPLAY_SPEED).isEmpty() ? 1 : getPropertyAsDouble(REPLAY_SPEED);
+                UdpAddress address = (UdpAddress) target.getAddress();
+                destination = new InetSocketAddress(address.getInetAddress(), address.getPort());
+            } catch (IOException e) {
+                log.error("Open trap corpus", e);
+            }
+        }
+        if (communicationStyle == CommunicationStyle.RequestOnly && snmpVersion == SnmpVersion.V2c
+                && (getPropertyAsBoolean(PRE_ENCODED) || batchSize > 1) && trapTemplate != null) {
+            try {
+                trapEncoder = new TrapEncoder(trapTemplate, SnmpConstants.version2c, getCommunity());
+                sendBuffer = TrapEncoder.allocateBuffer(Math.min(batchSize, BATCH_BUFFER_MESSAGES));
+                batchEnds = new int[batchSize];
+                UdpAddress address = (UdpAddress) target.getAddress();
+                destination = new InetSocketAddress(address.getInetAddress(), address.getPort());
+            } catch (Exception e) {
+                log.error("Open pre-encoded SNMP Sender", e);
+                trapEncoder = null;
+                batchSize = 1;
+            }
+        }
+        if (communicationStyle == CommunicationStyle.RequestResponse || communicationStyle.isConfirmed()) {
+            timeout = getPropertyAsLong(TIMEOUT);
+            storeResponse = getPropertyAsBoolean(STORE_RESPONSE);
+            if (getPropertyAsBoolean(ASYNC) && communicationStyle != CommunicationStyle.Walk) {
+                asyncWindow = new AsyncWindow(Math.max(1, getPropertyAsInt(WINDOW, DEFAULT_WINDOW)));
+            }
+        }
+        if (communicationStyle == CommunicationStyle.RequestResponse && asyncWindow == null) {
+            conversations = getPropertyAsInt(CONVERSATIONS, 1);
+            if (conversations > 1) {
+                if (!Conversations.isVirtual()) {
+                    log.warn("Virtual threads need Java 21, running " + conversations
+                            + " conversations per sample on platform threads");
+                }
+                conversationExecutor = Conversations.newExecutor("SNMP conversation " + getThreadName());
+            }
+        }
+        if (communicationStyle.isConfirmed() && target != null) {
+            retries = Math.max(0, getPropertyAsInt(RETRIES, 0));
+            nonRepeaters = Math.max(0, getPropertyAsInt(NON_REPEATERS, 0));
+            maxRepetitions = Math.max(1, getPropertyAsInt(MAX_REPETITIONS, DEFAULT_MAX_REPETITIONS));
+            target.setTimeout(timeout);
+            requestSender = new RequestSender(snmp, target, retries);
+            if (communicationStyle == CommunicationStyle.Walk) {
+                int pipelines = Math.max(1, getPropertyAsInt(WALK_PIPELINES, DEFAULT_WALK_PIPELINES));
+                tableWalker = new TableWalker(requestSender, maxRepetitions, pipelines);
+            }
+        }
         if (communicationStyle == CommunicationStyle.RequestResponse) {
+            if (snmpVersion == SnmpVersion.V3) {
+                log.warn("Sending SNMPv3 notifications, the system under test must return SNMPv1 or v2c traps,"
+                        + " SNMPv3 return traps cannot be correlated");
+            }
             correlationOid = getCorrelationOid();
             try {
-                snmpReceiver = SnmpReceiver.getInstance(getListeningAddress(), correlationOid);
+                receiverFlow = SnmpReceiver.acquire(getListeningAddress(), correlationOid);
             } catch (IOException e) {
                 log.error("Open SNMP Listener", e);
             }
         }
     }
 
+    /**
+     * Waits for the requests in flight, so their results are reported before the receiver is released.
+     */
+    private void awaitInFlight() {
+        try {
+            // timed out return traps complete on the next sweep of the correlation table
+            long sweep = JMeterUtils.getPropDefault(CorrelationTable.SWEEP_INTERVAL_PROPERTY, 1000L);
+            if (!asyncWindow.awaitIdle(getAttemptsTimeout() + sweep)) {
+                log.warn("Thread finished with " + asyncWindow.getInFlight() + " requests in flight");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     @Override
     public void threadFinished() {
         log.info("Thread finished");
+        if (asyncWindow != null) {
+            awaitInFlight();
+            asyncWindow = null;
+        }
+        if (conversationExecutor != null) {
+            conversationExecutor.shutdownNow();
+            conversationExecutor = null;
+        }
+        if (replayCursor != null) {
+            TrapCorpus.release(replayCursor.getCorpus());
+            replayCursor = null;
+            replayStart = 0;
+        }
+        if (receiverFlow != null) {
+            SnmpReceiver.release(receiverFlow);
+            receiverFlow = null;
+        }
         if (snmp != null) {
-            try {
-                snmp.close();
-            } catch (IOException e) {
-                log.warn("Close SNMP", e);
-            }
+            snmp = null;
+            channel = null;
+            SnmpTransportPool.release();
         }
     }
 }
@@ -0,0 +1,81 @@
+package pl.jakubchmura.jmeter.snmp.sampler;
+
+import org.apache.jmeter.samplers.Entry;
+import org.apache.jmeter.samplers.SampleResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.jakubchmura.jmeter.snmp.sampler.util.RateProfile;
+import pl.jakubchmura.jmeter.snmp.sampler.util.RateSchedule;
+
+/**
+ * {@link SnmpSampler} sending at a configured rate. All threads of a thread group running the same generator share
+ * one schedule, so the thread count only has to be high enough to keep up with it. The rate is in traps per second,
+ * a sample sending a batch or several conversations takes as many slots as it sends traps.
+ */
+public class SnmpTrapGenerator extends SnmpSampler {
+
+    public static final String RATE_PROFILE = "SnmpTrapGenerator.rateProfile";
+    public static final String START_RATE = "SnmpTrapGenerator.startRate";
+    public static final String TARGET_RATE = "SnmpTrapGenerator.targetRate";
+    public static final String RAMP_TIME = "SnmpTrapGenerator.rampTime";
+    public static final String STEP_RATE = "SnmpTrapGenerator.stepRate";
+    public static final String STEP_TIME = "SnmpTrapGenerator.stepTime";
+    public static final String STEPS = "SnmpTrapGenerator.steps";
+    public static final String TOLERANCE = "SnmpTrapGenerator.tolerance";
+
+    private static final int DEFAULT_TOLERANCE = 5;
+
+    private static final Logger log = LoggerFactory.getLogger(SnmpTrapGenerator.class);
+
+    private TrapPacer pacer;
+
+    @Override
+    public SampleResult sample(Entry e) {
+        if (pacer == null) {
+            SampleResult res = new SampleResult();
+            res.setSampleLabel(getName());
+            res.setSuccessful(false);
+            res.setResponseMessage("Invalid rate configuration");
+            return res;
+        }
+        pacer.awaitNextSlots(getTrapsPerSample());
+        SampleResult res = super.sample(e);
+        pacer.sent(res.getSampleCount());
+        return res;
+    }
+
+    private RateSchedule createSchedule() {
+        RateProfile profile = RateProfile.fromName(getPropertyAsString(RATE_PROFILE));
+        switch (profile) {
+            case Ramp:
+                return RateSchedule.ramp(getPropertyAsDouble(START_RATE), getPropertyAsDouble(TARGET_RATE),
+                        getPropertyAsDouble(RAMP_TIME));
+            case Step:
+                return RateSchedule.step(getPropertyAsDouble(START_RATE), getPropertyAsDouble(STEP_RATE),
+                        getPropertyAsDouble(STEP_TIME), getPropertyAsInt(STEPS));
+            default:
+                return RateSchedule.constant(getPropertyAsDouble(TARGET_RATE));
+        }
+    }
+
+    @Override
+    public void threadStarted() {
+        super.threadStarted();
+        try {
+            String name = getThreadContext().getThreadGroup().getName() + "/" + getName();
+            double tolerance = getPropertyAsInt(TOLERANCE, DEFAULT_TOLERANCE) / 100.0;
+            pacer = TrapPacer.acquire(name, createSchedule(), tolerance);
+        } catch (IllegalArgumentException e) {
+            log.error("Create rate schedule", e);
+        }
+    }
+
+    @Override
+    public void threadFinished() {
+        if (pacer != null) {
+            TrapPacer.release(pacer);
+            pacer = null;
+        }
+        super.threadFinished();
+    }
+}
@@ -0,0 +1,100 @@
+package pl.jakubchmura.jmeter.snmp.sampler;
+
+import org.apache.jmeter.engine.StandardJMeterEngine;
+import org.apache.jmeter.testelement.AbstractTestElement;
+import org.apache.jmeter.testelement.TestStateListener;
+import org.apache.jmeter.util.JMeterUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.jakubchmura.jmeter.snmp.sampler.snmp.TrapResponder;
+import pl.jakubchmura.jmeter.snmp.sampler.util.DelayDistribution;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs a {@link TrapResponder} for the duration of the test, so samplers in RequestResponse style can be run without
+ * an external system: the destination of the samplers is the address of the responder and the listening address of
+ * the samplers is its return address. With several return addresses the replies go to them in turn.
+ */
+public class SnmpTrapResponder extends AbstractTestElement implements TestStateListener {
+
+    public static final String IP = "SnmpTrapResponder.ip";
+    public static final String PORT = "SnmpTrapResponder.port";
+    public static final String RETURN_IP = "SnmpTrapResponder.returnIp";
+    public static final String RETURN_PORT = "SnmpTrapResponder.returnPort";
+    public static final String DISTRIBUTION = "SnmpTrapResponder.distribution";
+    public static final String DELAY = "SnmpTrapResponder.delay";
+    public static final String JITTER = "SnmpTrapResponder.jitter";
+    public static final String DROP_PERCENT = "SnmpTrapResponder.dropPercent";
+
+    private static final Logger log = LoggerFactory.getLogger(SnmpTrapResponder.class);
+
+    private transient TrapResponder responder;
+
+    @Override
+    public void testStarted() {
+        try {
+            DelayDistribution distribution = DelayDistribution.fromName(getPropertyAsString(DISTRIBUTION,
+                    DelayDistribution.Constant.getName()));
+            String dropPercent = getPropertyAsString(DROP_PERCENT);
+            double dropRate = dropPercent.isEmpty() ? 0 : Double.parseDouble(dropPercent) / 100;
+            responder = new TrapResponder(
+                    new InetSocketAddress(getPropertyAsString(IP, "0.0.0.0"), getPropertyAsInt(PORT)),
+                    getReturnAddresses(),
+                    distribution, getPropertyAsLong(DELAY), getPropertyAsLong(JITTER), dropRate);
+        } catch (IOException | RuntimeException e) {
+            // without the responder every sample would fail with a misleading timeout. An exception thrown here
+            // would end the engine thread without ending the test, so the test is stopped instead.
+            log.error("Start trap responder, stopping the test", e);
+            JMeterUtils.reportErrorToUser("Cannot start trap responder: " + e.getLocalizedMessage(),
+                    "SNMP Trap Responder");
+            StandardJMeterEngine.stopEngineNow();
+        }
+    }
+
+    /**
+     * Return IPs are comma separated, each optionally with its own port, e.g. for the load generators of a
+     * distributed test.
+     */
+    private InetSocketAddress[] getReturnAddresses() {
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (String host : getPropertyAsString(RETURN_IP).split(",")) {
+            host = host.trim();
+            if (host.isEmpty()) {
+                continue;
+            }
+            int colon = host.indexOf(':');
+            if (colon >= 0 && colon == host.lastIndexOf(':')) {
+                addresses.add(new InetSocketAddress(host.substring(0, colon),
+                        Integer.parseInt(host.substring(colon + 1))));
+            } else {
+                addresses.add(new InetSocketAddress(host, getPropertyAsInt(RETURN_PORT)));
+            }
+        }
+        if (addresses.isEmpty()) {
+            throw new IllegalArgumentException("No return IP");
+        }
+        return addresses.toArray(new InetSocketAddress[0]);
+    }
+
+    @Override
+    public void testStarted(String host) {
+        testStarted();
+    }
+
+    @Override
+    public void testEnded() {
+        if (responder != null) {
+            responder.close();
+            responder = null;
+        }
+    }
+
+    @Override
+    public void testEnded(String host) {
+        testEnded();
+    }
+}
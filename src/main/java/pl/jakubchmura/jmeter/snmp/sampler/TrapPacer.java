@@ -0,0 +1,105 @@
+package pl.jakubchmura.jmeter.snmp.sampler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.jakubchmura.jmeter.snmp.sampler.util.RateSchedule;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands out send slots of a {@link RateSchedule} to the threads of one generator. Each thread claims the next slot
+ * and waits until it is due, so the achieved rate does not depend on the number of threads as long as they keep up.
+ */
+public class TrapPacer {
+
+    private static final long SPIN_NANOS = 50_000;
+    private static final long REPORT_INTERVAL_NANOS = 1_000_000_000;
+
+    private static final Map<String, TrapPacer> pacers = new HashMap<>();
+    private static final Object lock = new Object();
+
+    private static final Logger log = LoggerFactory.getLogger(TrapPacer.class);
+
+    private final String name;
+    private final RateSchedule schedule;
+    private final double tolerance;
+    private final long start = System.nanoTime();
+    private final AtomicLong nextEvent = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong nextReport = new AtomicLong(start + REPORT_INTERVAL_NANOS);
+    private long reportedSent;
+    private int references;
+
+    private TrapPacer(String name, RateSchedule schedule, double tolerance) {
+        this.name = name;
+        this.schedule = schedule;
+        this.tolerance = tolerance;
+    }
+
+    public static TrapPacer acquire(String name, RateSchedule schedule, double tolerance) {
+        synchronized (lock) {
+            TrapPacer pacer = pacers.get(name);
+            if (pacer == null) {
+                pacer = new TrapPacer(name, schedule, tolerance);
+                pacers.put(name, pacer);
+            }
+            pacer.references++;
+            return pacer;
+        }
+    }
+
+    public static void release(TrapPacer pacer) {
+        synchronized (lock) {
+            if (pacer.references > 0 && --pacer.references == 0) {
+                pacers.remove(pacer.name);
+            }
+        }
+    }
+
+    /**
+     * Claims the next {@code traps} slots, waits until the first of them is due and returns how many nanoseconds
+     * after its due time the caller woke up.
+     */
+    public long awaitNextSlots(int traps) {
+        long due = start + schedule.timeOf(nextEvent.getAndAdd(traps));
+        long remaining;
+        while ((remaining = due - System.nanoTime()) > 0 && !Thread.currentThread().isInterrupted()) {
+            if (remaining > SPIN_NANOS) {
+                LockSupport.parkNanos(remaining - SPIN_NANOS);
+            } else {
+                Thread.yield();
+            }
+        }
+        return Math.max(0, System.nanoTime() - due);
+    }
+
+    public void sent(int traps) {
+        sent.addAndGet(traps);
+        long now = System.nanoTime();
+        long report = nextReport.get();
+        if (now >= report && nextReport.compareAndSet(report, now + REPORT_INTERVAL_NANOS)) {
+            report(now, report - REPORT_INTERVAL_NANOS);
+        }
+    }
+
+    public double getTargetRate() {
+        return schedule.rateAt((System.nanoTime() - start) / 1e9);
+    }
+
+    private synchronized void report(long now, long intervalStart) {
+        long total = sent.get();
+        double seconds = (now - intervalStart) / 1e9;
+        double achieved = (total - reportedSent) / seconds;
+        double expected = schedule.eventsUntil((now - start) / 1e9) - schedule.eventsUntil((intervalStart - start) / 1e9);
+        double target = expected / seconds;
+        reportedSent = total;
+        if (achieved < target * (1 - tolerance)) {
+            log.warn(name + ": achieved " + Math.round(achieved) + " traps/s, target " + Math.round(target) + " traps/s");
+        } else {
+            log.debug(name + ": achieved " + Math.round(achieved) + " traps/s, target " + Math.round(target) + " traps/s");
+        }
+    }
+}
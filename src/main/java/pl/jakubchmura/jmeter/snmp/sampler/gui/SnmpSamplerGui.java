@@ -4,7 +4,10 @@ import org.apache.jmeter.gui.util.VerticalPanel;
 import org.apache.jmeter.samplers.gui.AbstractSamplerGui;
 import org.apache.jmeter.testelement.TestElement;
 import pl.jakubchmura.jmeter.snmp.sampler.SnmpSampler;
+import pl.jakubchmura.jmeter.snmp.sampler.util.AuthProtocol;
 import pl.jakubchmura.jmeter.snmp.sampler.util.CommunicationStyle;
+import pl.jakubchmura.jmeter.snmp.sampler.util.PrivProtocol;
+import pl.jakubchmura.jmeter.snmp.sampler.util.SnmpVersion;
 
 import javax.swing.*;
 import java.awt.*;
@@ -19,8 +22,28 @@ public class SnmpSamplerGui extends AbstractSamplerGui {
     private final JTextField listeningIpField = new JTextField();
     private final JTextField listeningPortField = new JTextField();
     private final JTextField correlationOid = new JTextField();
+    private final JCheckBox generateCorrelationBox = new JCheckBox("Generate unique correlation values");
     private final JTextField timeoutField = new JTextField();
     private final JTextField communityField = new JTextField();
+    private final JComboBox<String> versionCombo = new JComboBox<>(SnmpVersion.getNames());
+    private final JTextField securityNameField = new JTextField();
+    private final JComboBox<String> authProtocolCombo = new JComboBox<>(AuthProtocol.getNames());
+    private final JTextField authPassphraseField = new JTextField();
+    private final JComboBox<String> privProtocolCombo = new JComboBox<>(PrivProtocol.getNames());
+    private final JTextField privPassphraseField = new JTextField();
+    private final JTextField engineIdField = new JTextField();
+    private final JCheckBox preEncodedBox = new JCheckBox("Pre-encoded send");
+    private final JTextField batchSizeField = new JTextField();
+    private final JTextField retriesField = new JTextField();
+    private final JTextField nonRepeatersField = new JTextField();
+    private final JTextField maxRepetitionsField = new JTextField();
+    private final JTextField walkPipelinesField = new JTextField();
+    private final JTextField replayFileField = new JTextField();
+    private final JTextField replaySpeedField = new JTextField();
+    private final JCheckBox asyncBox = new JCheckBox("Asynchronous (responses reported as separate samples)");
+    private final JTextField windowField = new JTextField();
+    private final JTextField conversationsField = new JTextField();
+    private final JCheckBox storeResponseBox = new JCheckBox("Store response as response data");
     private final SnmpTrapPanel snmpTrapPanel = new SnmpTrapPanel();
 
     public SnmpSamplerGui() {
@@ -42,9 +65,10 @@ public class SnmpSamplerGui extends AbstractSamplerGui {
 
     }
 
-    private Component makeBodyPanel() {
+    protected VerticalPanel makeBodyPanel() {
         VerticalPanel bodyPanel = new VerticalPanel();
         bodyPanel.add(makeConnectionPanel());
+        bodyPanel.add(makeSecurityPanel());
         bodyPanel.add(makeTrapPanel());
         return bodyPanel;
     }
@@ -59,31 +83,93 @@ public class SnmpSamplerGui extends AbstractSamplerGui {
         connectionPanel.add(makeLabeledPanel("Listening IP", listeningIpField));
         connectionPanel.add(makeLabeledPanel("Listening port", listeningPortField));
         connectionPanel.add(makeLabeledPanel("Correlation OID", correlationOid));
+        connectionPanel.add(generateCorrelationBox);
         connectionPanel.add(makeLabeledPanel("Timeout [ms]", timeoutField));
+        connectionPanel.add(makeLabeledPanel("Retries", retriesField));
+        connectionPanel.add(makeLabeledPanel("Non-repeaters", nonRepeatersField));
+        connectionPanel.add(makeLabeledPanel("Max repetitions", maxRepetitionsField));
+        connectionPanel.add(makeLabeledPanel("Walk pipelines", walkPipelinesField));
+        connectionPanel.add(storeResponseBox);
+        connectionPanel.add(asyncBox);
+        connectionPanel.add(makeLabeledPanel("Max in flight", windowField));
+        connectionPanel.add(makeLabeledPanel("Conversations per sample (virtual threads on Java 21)", conversationsField));
+        connectionPanel.add(preEncodedBox);
+        connectionPanel.add(makeLabeledPanel("Traps per sample", batchSizeField));
+        connectionPanel.add(makeLabeledPanel("Replay file (pcap or length-prefixed)", replayFileField));
+        connectionPanel.add(makeLabeledPanel("Replay speed (0 = unpaced)", replaySpeedField));
 
         communicationStyleCombo.addActionListener(e -> {
             String selectedItem = (String) communicationStyleCombo.getSelectedItem();
             CommunicationStyle style = CommunicationStyle.fromName(selectedItem);
             boolean listening = CommunicationStyle.RequestResponse == style;
+            boolean confirmed = style != null && style.isConfirmed();
             listeningIpField.setEnabled(listening);
             listeningPortField.setEnabled(listening);
             correlationOid.setEnabled(listening);
-            timeoutField.setEnabled(listening);
+            generateCorrelationBox.setEnabled(listening);
+            timeoutField.setEnabled(listening || confirmed);
+            retriesField.setEnabled(confirmed);
+            boolean walk = CommunicationStyle.Walk == style;
+            nonRepeatersField.setEnabled(CommunicationStyle.GetBulk == style);
+            maxRepetitionsField.setEnabled(CommunicationStyle.GetBulk == style || walk);
+            walkPipelinesField.setEnabled(walk);
+            storeResponseBox.setEnabled(listening || confirmed);
+            asyncBox.setEnabled((listening || confirmed) && !walk);
+            windowField.setEnabled((listening || confirmed) && !walk);
+            conversationsField.setEnabled(listening);
+            boolean replay = CommunicationStyle.Replay == style;
+            preEncodedBox.setEnabled(!listening && !confirmed && !replay);
+            batchSizeField.setEnabled(!listening && !confirmed && !replay);
+            replayFileField.setEnabled(replay);
+            replaySpeedField.setEnabled(replay);
         });
         communicationStyleCombo.setSelectedIndex(0);
 
         return connectionPanel;
     }
 
+    private Component makeSecurityPanel() {
+        VerticalPanel securityPanel = new VerticalPanel();
+        securityPanel.setBorder(BorderFactory.createTitledBorder(BorderFactory.createEtchedBorder(), "Security"));
+
+        securityPanel.add(makeLabeledPanel("SNMP version", versionCombo));
+        securityPanel.add(makeLabeledPanel("Community", communityField));
+        securityPanel.add(makeLabeledPanel("Security name", securityNameField));
+        securityPanel.add(makeLabeledPanel("Authentication protocol", authProtocolCombo));
+        securityPanel.add(makeLabeledPanel("Authentication passphrase", authPassphraseField));
+        securityPanel.add(makeLabeledPanel("Privacy protocol", privProtocolCombo));
+        securityPanel.add(makeLabeledPanel("Privacy passphrase", privPassphraseField));
+        securityPanel.add(makeLabeledPanel("Authoritative engine ID", engineIdField));
+
+        versionCombo.addActionListener(e -> updateSecurityFields());
+        authProtocolCombo.addActionListener(e -> updateSecurityFields());
+        privProtocolCombo.addActionListener(e -> updateSecurityFields());
+        versionCombo.setSelectedIndex(0);
+
+        return securityPanel;
+    }
+
+    private void updateSecurityFields() {
+        boolean v3 = SnmpVersion.V3 == SnmpVersion.fromName((String) versionCombo.getSelectedItem());
+        boolean auth = AuthProtocol.None != AuthProtocol.fromName((String) authProtocolCombo.getSelectedItem());
+        boolean priv = PrivProtocol.None != PrivProtocol.fromName((String) privProtocolCombo.getSelectedItem());
+        communityField.setEnabled(!v3);
+        securityNameField.setEnabled(v3);
+        authProtocolCombo.setEnabled(v3);
+        authPassphraseField.setEnabled(v3 && auth);
+        privProtocolCombo.setEnabled(v3 && auth);
+        privPassphraseField.setEnabled(v3 && auth && priv);
+        engineIdField.setEnabled(v3);
+    }
+
     private Component makeTrapPanel() {
         VerticalPanel trapPanel = new VerticalPanel();
         trapPanel.setBorder(BorderFactory.createTitledBorder(BorderFactory.createEtchedBorder(), "Notification"));
-        trapPanel.add(makeLabeledPanel("Community", communityField));
         trapPanel.add(snmpTrapPanel);
         return trapPanel;
     }
 
-    private Component makeLabeledPanel(String label, Component component) {
+    protected Component makeLabeledPanel(String label, Component component) {
         JPanel panel = new JPanel(new BorderLayout());
         JLabel jLabel = new JLabel(label);
         panel.add(jLabel, BorderLayout.WEST);
@@ -115,7 +201,27 @@ public class SnmpSamplerGui extends AbstractSamplerGui {
         element.setProperty(LISTENING_PORT, listeningPortField.getText());
         element.setProperty(CORRELATION_OID, correlationOid.getText());
         element.setProperty(TIMEOUT, timeoutField.getText());
+        element.setProperty(RETRIES, retriesField.getText());
+        element.setProperty(NON_REPEATERS, nonRepeatersField.getText());
+        element.setProperty(MAX_REPETITIONS, maxRepetitionsField.getText());
+        element.setProperty(WALK_PIPELINES, walkPipelinesField.getText());
         element.setProperty(COMMUNITY, communityField.getText());
+        element.setProperty(SNMP_VERSION, (String) versionCombo.getSelectedItem());
+        element.setProperty(SECURITY_NAME, securityNameField.getText());
+        element.setProperty(AUTH_PROTOCOL, (String) authProtocolCombo.getSelectedItem());
+        element.setProperty(AUTH_PASSPHRASE, authPassphraseField.getText());
+        element.setProperty(PRIV_PROTOCOL, (String) privProtocolCombo.getSelectedItem());
+        element.setProperty(PRIV_PASSPHRASE, privPassphraseField.getText());
+        element.setProperty(ENGINE_ID, engineIdField.getText());
+        element.setProperty(STORE_RESPONSE, storeResponseBox.isSelected());
+        element.setProperty(ASYNC, asyncBox.isSelected());
+        element.setProperty(GENERATE_CORRELATION_VALUES, generateCorrelationBox.isSelected());
+        element.setProperty(WINDOW, windowField.getText());
+        element.setProperty(CONVERSATIONS, conversationsField.getText());
+        element.setProperty(PRE_ENCODED, preEncodedBox.isSelected());
+        element.setProperty(BATCH_SIZE, batchSizeField.getText());
+        element.setProperty(REPLAY_FILE, replayFileField.getText());
+        element.setProperty(REPLAY_SPEED, replaySpeedField.getText());
         snmpTrapPanel.modifyTestElement(element);
     }
 
@@ -129,7 +235,27 @@ public class SnmpSamplerGui extends AbstractSamplerGui {
         listeningPortField.setText(element.getPropertyAsString(LISTENING_PORT));
         correlationOid.setText(element.getPropertyAsString(CORRELATION_OID));
         timeoutField.setText(element.getPropertyAsString(TIMEOUT));
+        retriesField.setText(element.getPropertyAsString(RETRIES));
+        nonRepeatersField.setText(element.getPropertyAsString(NON_REPEATERS));
+        maxRepetitionsField.setText(element.getPropertyAsString(MAX_REPETITIONS));
+        walkPipelinesField.setText(element.getPropertyAsString(WALK_PIPELINES));
         communityField.setText(element.getPropertyAsString(COMMUNITY));
+        versionCombo.setSelectedItem(element.getPropertyAsString(SNMP_VERSION, SnmpVersion.V2c.getName()));
+        securityNameField.setText(element.getPropertyAsString(SECURITY_NAME));
+        authProtocolCombo.setSelectedItem(element.getPropertyAsString(AUTH_PROTOCOL, AuthProtocol.None.getName()));
+        authPassphraseField.setText(element.getPropertyAsString(AUTH_PASSPHRASE));
+        privProtocolCombo.setSelectedItem(element.getPropertyAsString(PRIV_PROTOCOL, PrivProtocol.None.getName()));
+        privPassphraseField.setText(element.getPropertyAsString(PRIV_PASSPHRASE));
+        engineIdField.setText(element.getPropertyAsString(ENGINE_ID));
+        storeResponseBox.setSelected(element.getPropertyAsBoolean(STORE_RESPONSE));
+        asyncBox.setSelected(element.getPropertyAsBoolean(ASYNC));
+        generateCorrelationBox.setSelected(element.getPropertyAsBoolean(GENERATE_CORRELATION_VALUES));
+        windowField.setText(element.getPropertyAsString(WINDOW));
+        conversationsField.setText(element.getPropertyAsString(CONVERSATIONS));
+        preEncodedBox.setSelected(element.getPropertyAsBoolean(PRE_ENCODED));
+        batchSizeField.setText(element.getPropertyAsString(BATCH_SIZE));
+        replayFileField.setText(element.getPropertyAsString(REPLAY_FILE));
+        replaySpeedField.setText(element.getPropertyAsString(REPLAY_SPEED));
         snmpTrapPanel.configure(element);
     }
 
@@ -142,6 +268,26 @@ public class SnmpSamplerGui extends AbstractSamplerGui {
         listeningIpField.setText("");
         listeningPortField.setText("");
         communityField.setText("");
+        versionCombo.setSelectedIndex(0);
+        securityNameField.setText("");
+        authProtocolCombo.setSelectedIndex(0);
+        authPassphraseField.setText("");
+        privProtocolCombo.setSelectedIndex(0);
+        privPassphraseField.setText("");
+        engineIdField.setText("");
+        retriesField.setText("");
+        nonRepeatersField.setText("");
+        maxRepetitionsField.setText("");
+        walkPipelinesField.setText("");
+        storeResponseBox.setSelected(false);
+        asyncBox.setSelected(false);
+        generateCorrelationBox.setSelected(false);
+        windowField.setText("");
+        conversationsField.setText("");
+        preEncodedBox.setSelected(false);
+        batchSizeField.setText("");
+        replayFileField.setText("");
+        replaySpeedField.setText("");
         snmpTrapPanel.clearGui();
     }
 }
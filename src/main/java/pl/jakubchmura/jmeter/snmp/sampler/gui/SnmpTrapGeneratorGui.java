@@ -0,0 +1,119 @@
+package pl.jakubchmura.jmeter.snmp.sampler.gui;
+
+import org.apache.jmeter.gui.util.VerticalPanel;
+import org.apache.jmeter.testelement.TestElement;
+import pl.jakubchmura.jmeter.snmp.sampler.SnmpTrapGenerator;
+import pl.jakubchmura.jmeter.snmp.sampler.util.RateProfile;
+
+import javax.swing.*;
+import java.awt.*;
+
+import static pl.jakubchmura.jmeter.snmp.sampler.SnmpTrapGenerator.*;
+
+public class SnmpTrapGeneratorGui extends SnmpSamplerGui {
+
+    // Created in makeBodyPanel(), which runs from the super constructor before field initializers.
+    private JComboBox<String> rateProfileCombo;
+    private JTextField startRateField;
+    private JTextField targetRateField;
+    private JTextField rampTimeField;
+    private JTextField stepRateField;
+    private JTextField stepTimeField;
+    private JTextField stepsField;
+    private JTextField toleranceField;
+
+    @Override
+    protected VerticalPanel makeBodyPanel() {
+        VerticalPanel bodyPanel = super.makeBodyPanel();
+        bodyPanel.add(makeRatePanel(), 1);
+        return bodyPanel;
+    }
+
+    private Component makeRatePanel() {
+        rateProfileCombo = new JComboBox<>(RateProfile.getNames());
+        startRateField = new JTextField();
+        targetRateField = new JTextField();
+        rampTimeField = new JTextField();
+        stepRateField = new JTextField();
+        stepTimeField = new JTextField();
+        stepsField = new JTextField();
+        toleranceField = new JTextField();
+
+        VerticalPanel ratePanel = new VerticalPanel();
+        ratePanel.setBorder(BorderFactory.createTitledBorder(BorderFactory.createEtchedBorder(), "Rate"));
+
+        ratePanel.add(makeLabeledPanel("Profile", rateProfileCombo));
+        ratePanel.add(makeLabeledPanel("Start rate [traps/s]", startRateField));
+        ratePanel.add(makeLabeledPanel("Target rate [traps/s]", targetRateField));
+        ratePanel.add(makeLabeledPanel("Ramp time [s]", rampTimeField));
+        ratePanel.add(makeLabeledPanel("Step increase [traps/s]", stepRateField));
+        ratePanel.add(makeLabeledPanel("Step time [s]", stepTimeField));
+        ratePanel.add(makeLabeledPanel("Steps", stepsField));
+        ratePanel.add(makeLabeledPanel("Report rate below target by [%]", toleranceField));
+
+        rateProfileCombo.addActionListener(e -> {
+            String selectedItem = (String) rateProfileCombo.getSelectedItem();
+            RateProfile profile = RateProfile.fromName(selectedItem);
+            startRateField.setEnabled(profile != RateProfile.Constant);
+            targetRateField.setEnabled(profile != RateProfile.Step);
+            rampTimeField.setEnabled(profile == RateProfile.Ramp);
+            stepRateField.setEnabled(profile == RateProfile.Step);
+            stepTimeField.setEnabled(profile == RateProfile.Step);
+            stepsField.setEnabled(profile == RateProfile.Step);
+        });
+        rateProfileCombo.setSelectedIndex(0);
+
+        return ratePanel;
+    }
+
+    @Override
+    public String getStaticLabel() {
+        return "SNMP Trap Generator";
+    }
+
+    @Override
+    public TestElement createTestElement() {
+        SnmpTrapGenerator generator = new SnmpTrapGenerator();
+        modifyTestElement(generator);
+        return generator;
+    }
+
+    @Override
+    public void modifyTestElement(TestElement element) {
+        super.modifyTestElement(element);
+        element.setProperty(RATE_PROFILE, (String) rateProfileCombo.getSelectedItem());
+        element.setProperty(START_RATE, startRateField.getText());
+        element.setProperty(TARGET_RATE, targetRateField.getText());
+        element.setProperty(RAMP_TIME, rampTimeField.getText());
+        element.setProperty(STEP_RATE, stepRateField.getText());
+        element.setProperty(STEP_TIME, stepTimeField.getText());
+        element.setProperty(STEPS, stepsField.getText());
+        element.setProperty(TOLERANCE, toleranceField.getText());
+    }
+
+    @Override
+    public void configure(TestElement element) {
+        super.configure(element);
+        rateProfileCombo.setSelectedItem(element.getPropertyAsString(RATE_PROFILE));
+        startRateField.setText(element.getPropertyAsString(START_RATE));
+        targetRateField.setText(element.getPropertyAsString(TARGET_RATE));
+        rampTimeField.setText(element.getPropertyAsString(RAMP_TIME));
+        stepRateField.setText(element.getPropertyAsString(STEP_RATE));
+        stepTimeField.setText(element.getPropertyAsString(STEP_TIME));
+        stepsField.setText(element.getPropertyAsString(STEPS));
+        toleranceField.setText(element.getPropertyAsString(TOLERANCE));
+    }
+
+    @Override
+    public void clearGui() {
+        super.clearGui();
+        rateProfileCombo.setSelectedIndex(0);
+        startRateField.setText("");
+        targetRateField.setText("");
+        rampTimeField.setText("");
+        stepRateField.setText("");
+        stepTimeField.setText("");
+        stepsField.setText("");
+        toleranceField.setText("");
+    }
+}
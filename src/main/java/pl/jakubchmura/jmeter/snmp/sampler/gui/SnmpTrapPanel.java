@@ -3,7 +3,6 @@ package pl.jakubchmura.jmeter.snmp.sampler.gui;
 import org.apache.jmeter.testelement.TestElement;
 import org.apache.jmeter.testelement.property.CollectionProperty;
 import org.apache.jmeter.testelement.property.JMeterProperty;
-import org.apache.jmeter.testelement.property.TestElementProperty;
 import org.apache.jmeter.util.JMeterUtils;
 import org.apache.jorphan.gui.GuiUtils;
 import org.slf4j.Logger;
@@ -11,6 +10,7 @@ import org.slf4j.LoggerFactory;
 import pl.jakubchmura.jmeter.snmp.sampler.SnmpSampler;
 import pl.jakubchmura.jmeter.snmp.sampler.util.SimpleVariableBinding;
 import pl.jakubchmura.jmeter.snmp.sampler.util.SnmpVariableType;
+import pl.jakubchmura.jmeter.snmp.sampler.util.VarbindBlock;
 
 import javax.swing.*;
 import javax.swing.table.AbstractTableModel;
@@ -18,6 +18,7 @@ import javax.swing.table.TableColumn;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -27,12 +28,14 @@ public class SnmpTrapPanel extends JPanel implements ActionListener {
 
     private static final String ADD_COMMAND = "Add";
     private static final String DELETE_COMMAND = "Delete";
+    private static final String IMPORT_COMMAND = "Import";
 
     private static final int COLUMN_OID = 0;
     private static final int COLUMN_VALUE = 1;
     private static final int COLUMN_TYPE = 2;
 
     private final InnerTableModel tableModel;
+    private final JTextField varbindsFileField = new JTextField();
     private JTable varbindTable;
     private JButton deleteButton;
 
@@ -43,34 +46,50 @@ public class SnmpTrapPanel extends JPanel implements ActionListener {
 
     public void clearGui() {
         tableModel.clearData();
+        varbindsFileField.setText("");
         deleteButton.setEnabled(false);
     }
 
     public void modifyTestElement(TestElement element) {
         GuiUtils.stopTableEditing(varbindTable);
-        element.setProperty(new CollectionProperty(SnmpSampler.VARBINDS, tableModel.variableBindings));
+        // the table is saved as one compact property, plans with the old per-row elements are converted
+        element.removeProperty(SnmpSampler.VARBINDS);
+        element.setProperty(SnmpSampler.VARBINDS_BLOCK, VarbindBlock.format(tableModel.rows));
+        element.setProperty(SnmpSampler.VARBINDS_FILE, varbindsFileField.getText());
     }
 
     public void configure(TestElement element) {
-        tableModel.variableBindings.clear();
+        tableModel.rows.clear();
         JMeterProperty property = element.getProperty(SnmpSampler.VARBINDS);
         if (property instanceof CollectionProperty) {
-            CollectionProperty collection = (CollectionProperty) property;
-            List<TestElementProperty> testElementProperties = (List<TestElementProperty>) collection.getObjectValue();
-            for (TestElementProperty testElementProperty : testElementProperties) {
-                SimpleVariableBinding variableBinding = (SimpleVariableBinding) testElementProperty.getElement();
-                tableModel.variableBindings.add(variableBinding);
-            }
-            if (tableModel.getRowCount() != 0) {
-                deleteButton.setEnabled(true);
+            for (JMeterProperty binding : (CollectionProperty) property) {
+                SimpleVariableBinding variableBinding = (SimpleVariableBinding) binding.getObjectValue();
+                SnmpVariableType type = variableBinding.getType();
+                tableModel.rows.add(new String[]{variableBinding.getOid(), variableBinding.getValue(), type.name()});
             }
         }
+        try {
+            tableModel.rows.addAll(VarbindBlock.parse(element.getPropertyAsString(SnmpSampler.VARBINDS_BLOCK)));
+        } catch (IllegalArgumentException e) {
+            log.warn("Cannot read variable bindings", e);
+        }
+        tableModel.fireTableDataChanged();
+        varbindsFileField.setText(element.getPropertyAsString(SnmpSampler.VARBINDS_FILE));
+        deleteButton.setEnabled(tableModel.getRowCount() != 0);
     }
 
     private void init() {
         setLayout(new BorderLayout());
         setBorder(BorderFactory.createEmptyBorder(10, 10, 5, 10));
         add(makeVarbindsPanel(), BorderLayout.CENTER);
+        add(makeFilePanel(), BorderLayout.SOUTH);
+    }
+
+    private JPanel makeFilePanel() {
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(new JLabel("Varbinds file (oid,value,type per line)"), BorderLayout.WEST);
+        panel.add(varbindsFileField, BorderLayout.CENTER);
+        return panel;
     }
 
     private JPanel makeVarbindsPanel() {
@@ -94,10 +113,14 @@ public class SnmpTrapPanel extends JPanel implements ActionListener {
 
         JButton addButton = createButton("add", 'A', ADD_COMMAND, true);
         deleteButton = createButton("delete", 'D', DELETE_COMMAND, !tableEmpty);
+        JButton importButton = new JButton("Import CSV");
+        importButton.setActionCommand(IMPORT_COMMAND);
+        importButton.addActionListener(this);
 
         JPanel buttonPanel = new JPanel();
         buttonPanel.add(addButton);
         buttonPanel.add(deleteButton);
+        buttonPanel.add(importButton);
         return buttonPanel;
     }
 
@@ -145,6 +168,19 @@ public class SnmpTrapPanel extends JPanel implements ActionListener {
                     }
                 }
             }
+        } else if (action.equals(IMPORT_COMMAND)) {
+            GuiUtils.stopTableEditing(varbindTable);
+            JFileChooser chooser = new JFileChooser();
+            if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
+            try {
+                tableModel.rows.addAll(VarbindBlock.read(chooser.getSelectedFile().getPath()));
+            } catch (IOException | IllegalArgumentException ex) {
+                JOptionPane.showMessageDialog(this, ex.getMessage(), "Import failed", JOptionPane.ERROR_MESSAGE);
+            }
+            tableModel.fireTableDataChanged();
+            deleteButton.setEnabled(tableModel.getRowCount() != 0);
         } else if (action.equals(ADD_COMMAND)) {
             // If a table cell is being edited, we should accept the current
             // value and stop the editing before adding a new row.
@@ -167,28 +203,29 @@ public class SnmpTrapPanel extends JPanel implements ActionListener {
 
     private static class InnerTableModel extends AbstractTableModel {
 
-        private List<SimpleVariableBinding> variableBindings;
+        // OID, value and type name of each row
+        private final List<String[]> rows;
 
         private InnerTableModel() {
-            variableBindings = new ArrayList<>();
+            rows = new ArrayList<>();
         }
 
         private void addNewRow() {
-            variableBindings.add(new SimpleVariableBinding("", "", SnmpVariableType.Counter32));
+            rows.add(new String[]{"", "", SnmpVariableType.Counter32.name()});
         }
 
         private void removeRow(int row) {
-            variableBindings.remove(row);
+            rows.remove(row);
         }
 
         private void clearData() {
-            variableBindings.clear();
+            rows.clear();
             fireTableDataChanged();
         }
 
         @Override
         public int getRowCount() {
-            return variableBindings.size();
+            return rows.size();
         }
 
         @Override
@@ -198,19 +235,7 @@ public class SnmpTrapPanel extends JPanel implements ActionListener {
 
         @Override
         public Object getValueAt(int rowIndex, int columnIndex) {
-            SimpleVariableBinding varbind = variableBindings.get(rowIndex);
-
-            switch (columnIndex) {
-                case COLUMN_OID:
-                    return varbind.getOid();
-                case COLUMN_VALUE:
-                    return varbind.getValue();
-                case COLUMN_TYPE:
-                    SnmpVariableType type = varbind.getType();
-                    return type == null? null: type.name();
-                default:
-                    return null;
-            }
+            return rows.get(rowIndex)[columnIndex];
         }
 
         @Override
@@ -234,17 +259,14 @@ public class SnmpTrapPanel extends JPanel implements ActionListener {
 
         @Override
         public void setValueAt(Object aValue, int rowIndex, int columnIndex) {
-            SimpleVariableBinding varbind = variableBindings.get(rowIndex);
-            log.debug("Setting varbind: " + aValue);
+            String[] row = rows.get(rowIndex);
             switch (columnIndex) {
                 case COLUMN_OID:
-                    varbind.setOid(aValue.toString());
-                    break;
                 case COLUMN_VALUE:
-                    varbind.setValue(aValue.toString());
+                    row[columnIndex] = aValue.toString();
                     break;
                 case COLUMN_TYPE:
-                    varbind.setType((SnmpVariableType) aValue);
+                    row[columnIndex] = ((SnmpVariableType) aValue).name();
                     break;
             }
         }
@@ -0,0 +1,116 @@
+package pl.jakubchmura.jmeter.snmp.sampler.gui;
+
+import org.apache.jmeter.config.gui.AbstractConfigGui;
+import org.apache.jmeter.gui.util.VerticalPanel;
+import org.apache.jmeter.testelement.TestElement;
+import pl.jakubchmura.jmeter.snmp.sampler.SnmpTrapResponder;
+import pl.jakubchmura.jmeter.snmp.sampler.util.DelayDistribution;
+
+import javax.swing.*;
+import java.awt.*;
+
+import static pl.jakubchmura.jmeter.snmp.sampler.SnmpTrapResponder.*;
+
+public class SnmpTrapResponderGui extends AbstractConfigGui {
+
+    private final JTextField ipField = new JTextField();
+    private final JTextField portField = new JTextField();
+    private final JTextField returnIpField = new JTextField();
+    private final JTextField returnPortField = new JTextField();
+    private final JComboBox<String> distributionCombo = new JComboBox<>(DelayDistribution.getNames());
+    private final JTextField delayField = new JTextField();
+    private final JTextField jitterField = new JTextField();
+    private final JTextField dropPercentField = new JTextField();
+
+    public SnmpTrapResponderGui() {
+        initGui();
+    }
+
+    private void initGui() {
+        setLayout(new BorderLayout());
+        setBorder(makeBorder());
+        add(makeTitlePanel(), BorderLayout.NORTH);
+
+        VerticalPanel responderPanel = new VerticalPanel();
+        responderPanel.setBorder(BorderFactory.createTitledBorder(BorderFactory.createEtchedBorder(), "Responder"));
+        responderPanel.add(makeLabeledPanel("Listening IP", ipField));
+        responderPanel.add(makeLabeledPanel("Listening port (destination port of the samplers)", portField));
+        responderPanel.add(makeLabeledPanel("Return IPs (comma separated, host or host:port)", returnIpField));
+        responderPanel.add(makeLabeledPanel("Return port (listening port of the samplers)", returnPortField));
+        responderPanel.add(makeLabeledPanel("Delay distribution", distributionCombo));
+        responderPanel.add(makeLabeledPanel("Delay [ms]", delayField));
+        responderPanel.add(makeLabeledPanel("Jitter [ms]", jitterField));
+        responderPanel.add(makeLabeledPanel("Dropped traps [%]", dropPercentField));
+
+        distributionCombo.addActionListener(e -> {
+            String selectedItem = (String) distributionCombo.getSelectedItem();
+            jitterField.setEnabled(DelayDistribution.fromName(selectedItem) != DelayDistribution.Constant);
+        });
+        distributionCombo.setSelectedIndex(0);
+
+        add(responderPanel, BorderLayout.CENTER);
+    }
+
+    private Component makeLabeledPanel(String label, Component component) {
+        JPanel panel = new JPanel(new BorderLayout());
+        JLabel jLabel = new JLabel(label);
+        panel.add(jLabel, BorderLayout.WEST);
+        panel.add(component, BorderLayout.CENTER);
+        return panel;
+    }
+
+    public String getLabelResource() {
+        return null;
+    }
+
+    @Override
+    public String getStaticLabel() {
+        return "SNMP Trap Responder";
+    }
+
+    @Override
+    public TestElement createTestElement() {
+        SnmpTrapResponder responder = new SnmpTrapResponder();
+        modifyTestElement(responder);
+        return responder;
+    }
+
+    @Override
+    public void modifyTestElement(TestElement element) {
+        configureTestElement(element);
+        element.setProperty(IP, ipField.getText());
+        element.setProperty(PORT, portField.getText());
+        element.setProperty(RETURN_IP, returnIpField.getText());
+        element.setProperty(RETURN_PORT, returnPortField.getText());
+        element.setProperty(DISTRIBUTION, (String) distributionCombo.getSelectedItem());
+        element.setProperty(DELAY, delayField.getText());
+        element.setProperty(JITTER, jitterField.getText());
+        element.setProperty(DROP_PERCENT, dropPercentField.getText());
+    }
+
+    @Override
+    public void configure(TestElement element) {
+        super.configure(element);
+        ipField.setText(element.getPropertyAsString(IP));
+        portField.setText(element.getPropertyAsString(PORT));
+        returnIpField.setText(element.getPropertyAsString(RETURN_IP));
+        returnPortField.setText(element.getPropertyAsString(RETURN_PORT));
+        distributionCombo.setSelectedItem(element.getPropertyAsString(DISTRIBUTION));
+        delayField.setText(element.getPropertyAsString(DELAY));
+        jitterField.setText(element.getPropertyAsString(JITTER));
+        dropPercentField.setText(element.getPropertyAsString(DROP_PERCENT));
+    }
+
+    @Override
+    public void clearGui() {
+        super.clearGui();
+        ipField.setText("");
+        portField.setText("");
+        returnIpField.setText("");
+        returnPortField.setText("");
+        distributionCombo.setSelectedIndex(0);
+        delayField.setText("");
+        jitterField.setText("");
+        dropPercentField.setText("");
+    }
+}
@@ -0,0 +1,66 @@
+package pl.jakubchmura.jmeter.snmp.sampler.snmp;
+
+import org.apache.jmeter.util.JMeterUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unique correlation values of one sampler thread, as {@value #LENGTH} octets: the node ID, a stripe unique to the
+ * generator within the JVM and a sequence number, all big-endian. Values of different threads differ in their stripe
+ * and values of different nodes in their node ID, so generating them needs no coordination.
+ * <p>
+ * The node ID is {@value #NODE_ID_PROPERTY}, from 0 to 65535. Without it each JVM picks a random one, which only
+ * makes collisions between the nodes of a distributed test unlikely.
+ */
+public class CorrelationIdGenerator {
+
+    public static final String NODE_ID_PROPERTY = "snmp.node.id";
+    public static final int LENGTH = 12;
+
+    private static final Logger log = LoggerFactory.getLogger(CorrelationIdGenerator.class);
+
+    private static final int nodeId = readNodeId();
+    // starts at a random stripe so a restarted JVM does not reuse the values of the previous run
+    private static final AtomicInteger stripes = new AtomicInteger(ThreadLocalRandom.current().nextInt());
+
+    private final int stripe = stripes.getAndIncrement();
+    private long sequence;
+
+    /**
+     * @return a new array holding the next value
+     */
+    public byte[] next() {
+        byte[] value = new byte[LENGTH];
+        next(value, 0);
+        return value;
+    }
+
+    /**
+     * Writes the next value to {@code out} at {@code offset}.
+     */
+    public void next(byte[] out, int offset) {
+        long n = sequence++;
+        out[offset] = (byte) (nodeId >>> 8);
+        out[offset + 1] = (byte) nodeId;
+        out[offset + 2] = (byte) (stripe >>> 24);
+        out[offset + 3] = (byte) (stripe >>> 16);
+        out[offset + 4] = (byte) (stripe >>> 8);
+        out[offset + 5] = (byte) stripe;
+        for (int i = LENGTH - 1; i >= 6; i--) {
+            out[offset + i] = (byte) n;
+            n >>>= 8;
+        }
+    }
+
+    private static int readNodeId() {
+        int id = JMeterUtils.getPropDefault(NODE_ID_PROPERTY, -1);
+        if (id < 0 || id > 0xFFFF) {
+            id = ThreadLocalRandom.current().nextInt(0x10000);
+            log.info(NODE_ID_PROPERTY + " is not set, generating correlation values with random node ID " + id);
+        }
+        return id;
+    }
+}
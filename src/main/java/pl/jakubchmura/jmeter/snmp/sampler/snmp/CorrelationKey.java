@@ -0,0 +1,78 @@
+package pl.jakubchmura.jmeter.snmp.sampler.snmp;
+
+import org.snmp4j.asn1.BER;
+import org.snmp4j.asn1.BEROutputStream;
+import org.snmp4j.smi.Variable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Correlation value identified by the content octets of its BER encoding. Keys created on the receive path are
+ * views into the received message, so looking up a return trap does not copy or format its value.
+ */
+public final class CorrelationKey {
+
+    private final byte[] data;
+    private final int offset;
+    private final int length;
+    private final int hash;
+
+    private CorrelationKey(byte[] data, int offset, int length) {
+        this.data = data;
+        this.offset = offset;
+        this.length = length;
+        int h = 1;
+        for (int i = offset; i < offset + length; i++) {
+            h = 31 * h + data[i];
+        }
+        this.hash = h;
+    }
+
+    public static CorrelationKey wrap(byte[] data, int offset, int length) {
+        return new CorrelationKey(data, offset, length);
+    }
+
+    public static CorrelationKey of(Variable variable) throws IOException {
+        int payloadLength = variable.getBERPayloadLength();
+        ByteBuffer buffer = ByteBuffer.allocate(variable.getBERLength());
+        variable.encodeBER(new BEROutputStream(buffer));
+        int headerLength = 1 + BER.getBERLengthOfLength(payloadLength);
+        return new CorrelationKey(buffer.array(), headerLength, payloadLength);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CorrelationKey)) {
+            return false;
+        }
+        CorrelationKey other = (CorrelationKey) o;
+        if (hash != other.hash || length != other.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (data[offset + i] != other.data[other.offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(length * 2);
+        for (int i = offset; i < offset + length; i++) {
+            builder.append(Character.forDigit((data[i] >> 4) & 0xF, 16));
+            builder.append(Character.forDigit(data[i] & 0xF, 16));
+        }
+        return builder.toString();
+    }
+}
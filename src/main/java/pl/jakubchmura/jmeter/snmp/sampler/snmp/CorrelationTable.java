@@ -0,0 +1,202 @@
+package pl.jakubchmura.jmeter.snmp.sampler.snmp;
+
+import org.apache.jmeter.util.JMeterUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Array;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Samples waiting for a return trap, sharded by the hash of the correlation key. Entries which outlive their timeout
+ * are removed by a background sweeper and their futures completed with a {@link TimeoutException}.
+ * <p>
+ * Removed keys are remembered for a while, so a trap which finds no entry can be told apart as a late arrival for
+ * an expired entry, a duplicate of a trap already matched or a trap not sent by this table at all.
+ */
+public class CorrelationTable<K, V> {
+
+    public static final String SHARDS_PROPERTY = "snmp.correlation.shards";
+    public static final String SWEEP_INTERVAL_PROPERTY = "snmp.correlation.sweepInterval";
+    public static final String RECENT_EXPIRED_PROPERTY = "snmp.correlation.recentExpired";
+    public static final String RECENT_COMPLETED_PROPERTY = "snmp.correlation.recentCompleted";
+    public static final String RECENT_WINDOW_PROPERTY = "snmp.correlation.recentWindow";
+
+    public enum Miss {
+        LATE, DUPLICATE, UNKNOWN
+    }
+
+    private static final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "SNMP correlation sweeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final Logger log = LoggerFactory.getLogger(CorrelationTable.class);
+
+    private final ConcurrentHashMap<K, Pending<K, V>>[] shards;
+    private final RecentKeys<K>[] expiredKeys;
+    private final RecentKeys<K>[] completedKeys;
+    private final int mask;
+    private final ScheduledFuture<?> sweep;
+
+    public CorrelationTable() {
+        int shardCount = Integer.highestOneBit(Math.max(1, JMeterUtils.getPropDefault(SHARDS_PROPERTY, 16)));
+        int expiredCapacity = JMeterUtils.getPropDefault(RECENT_EXPIRED_PROPERTY, 100000) / shardCount;
+        int completedCapacity = JMeterUtils.getPropDefault(RECENT_COMPLETED_PROPERTY, 100000) / shardCount;
+        long window = TimeUnit.MILLISECONDS.toNanos(JMeterUtils.getPropDefault(RECENT_WINDOW_PROPERTY, 60000L));
+        this.shards = newArray(ConcurrentHashMap.class, shardCount);
+        this.expiredKeys = newArray(RecentKeys.class, shardCount);
+        this.completedKeys = newArray(RecentKeys.class, shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new ConcurrentHashMap<>();
+            expiredKeys[i] = new RecentKeys<>(expiredCapacity, window);
+            completedKeys[i] = new RecentKeys<>(completedCapacity, window);
+        }
+        this.mask = shardCount - 1;
+        long interval = Math.max(1, JMeterUtils.getPropDefault(SWEEP_INTERVAL_PROPERTY, 1000L));
+        this.sweep = sweeper.scheduleWithFixedDelay(this::expire, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @throws IllegalStateException if a sample is already waiting for a trap with the same key
+     */
+    public void put(K key, CompletableFuture<V> future, long timeoutMillis) {
+        long sent = System.nanoTime();
+        Pending<K, V> pending = new Pending<>(key, future, sent,
+                sent + TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+        if (shards[index(key)].putIfAbsent(key, pending) != null) {
+            throw new IllegalStateException("Duplicate correlation value in flight: " + key);
+        }
+    }
+
+    /**
+     * Removes the entry of a matched trap. The key put by the sender is remembered rather than this one, which may
+     * be a view into a whole received message.
+     */
+    public CompletableFuture<V> remove(K key) {
+        int index = index(key);
+        Pending<K, V> pending = shards[index].remove(key);
+        if (pending == null) {
+            return null;
+        }
+        completedKeys[index].add(pending.key, pending.sent, System.nanoTime());
+        return pending.future;
+    }
+
+    /**
+     * Removes the entry of a sample which stopped waiting.
+     */
+    public boolean remove(K key, CompletableFuture<V> future) {
+        int index = index(key);
+        ConcurrentHashMap<K, Pending<K, V>> shard = shards[index];
+        Pending<K, V> pending = shard.get(key);
+        if (pending != null && pending.future == future && shard.remove(key, pending)) {
+            expiredKeys[index].add(key, pending.sent, System.nanoTime());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Classifies a trap for which {@link #remove(Object)} found no entry and records it in {@link SnmpMetrics}.
+     * A late trap is remembered as matched, so further copies of it count as duplicates.
+     */
+    public Miss miss(K key, long receivedNanos) {
+        int index = index(key);
+        long sent = expiredKeys[index].moveTo(key, receivedNanos, completedKeys[index]);
+        if (sent != RecentKeys.UNKNOWN) {
+            SnmpMetrics.getInstance().recordLate(receivedNanos - sent);
+            return Miss.LATE;
+        }
+        if (completedKeys[index].get(key, receivedNanos) != RecentKeys.UNKNOWN) {
+            SnmpMetrics.getInstance().duplicate();
+            return Miss.DUPLICATE;
+        }
+        return Miss.UNKNOWN;
+    }
+
+    public long size() {
+        long size = 0;
+        for (ConcurrentHashMap<K, Pending<K, V>> shard : shards) {
+            size += shard.mappingCount();
+        }
+        return size;
+    }
+
+    /**
+     * Stops the sweeper and completes the futures still pending with a {@link CancellationException} carrying the
+     * reason.
+     */
+    public void close(String reason) {
+        sweep.cancel(false);
+        int cancelled = 0;
+        for (ConcurrentHashMap<K, Pending<K, V>> shard : shards) {
+            for (Map.Entry<K, Pending<K, V>> entry : shard.entrySet()) {
+                Pending<K, V> pending = entry.getValue();
+                if (shard.remove(entry.getKey(), pending)) {
+                    pending.future.completeExceptionally(new CancellationException(reason));
+                    cancelled++;
+                }
+            }
+        }
+        if (cancelled > 0) {
+            log.info(reason + " with " + cancelled + " samples still waiting");
+        }
+    }
+
+    private int index(K key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private void expire() {
+        long now = System.nanoTime();
+        int expired = 0;
+        for (int i = 0; i < shards.length; i++) {
+            ConcurrentHashMap<K, Pending<K, V>> shard = shards[i];
+            for (Map.Entry<K, Pending<K, V>> entry : shard.entrySet()) {
+                Pending<K, V> pending = entry.getValue();
+                if (now - pending.deadline > 0 && shard.remove(entry.getKey(), pending)) {
+                    expiredKeys[i].add(entry.getKey(), pending.sent, now);
+                    pending.future.completeExceptionally(new TimeoutException("No return trap for " + entry.getKey()));
+                    expired++;
+                }
+            }
+        }
+        if (expired > 0) {
+            SnmpMetrics.getInstance().timeouts(expired);
+            if (log.isDebugEnabled()) {
+                log.debug("Expired " + expired + " pending correlations, " + size() + " still pending");
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T[] newArray(Class<?> componentType, int length) {
+        return (T[]) Array.newInstance(componentType, length);
+    }
+
+    private static class Pending<K, V> {
+
+        private final K key;
+        private final CompletableFuture<V> future;
+        private final long sent;
+        private final long deadline;
+
+        private Pending(K key, CompletableFuture<V> future, long sent, long deadline) {
+            this.key = key;
+            this.future = future;
+            this.sent = sent;
+            this.deadline = deadline;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package pl.jakubchmura.jmeter.snmp.sampler.snmp;
+
+import org.apache.jmeter.util.JMeterUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Channel between the load generators of a distributed test, for return traps which reach a different node than the
+ * one which sent the trap. A node forwards the return traps no local sample is waiting for to its peers and matches
+ * the traps forwarded to it, without forwarding them again.
+ * <p>
+ * The channel is off unless {@value #PORT_PROPERTY} is set. Peers are listed in {@value #PEERS_PROPERTY} as
+ * comma separated {@code host:port} pairs; the list may include the node itself, so all nodes can share it.
+ */
+public class MatchChannel implements Closeable {
+
+    public static final String PORT_PROPERTY = "snmp.match.port";
+    public static final String ADDRESS_PROPERTY = "snmp.match.address";
+    public static final String PEERS_PROPERTY = "snmp.match.peers";
+
+    private static final Logger log = LoggerFactory.getLogger(MatchChannel.class);
+
+    private final TrapListener listener;
+    private final DatagramChannel sender;
+    private final InetSocketAddress[] peers;
+
+    private MatchChannel(InetSocketAddress address, InetSocketAddress[] peers, TrapListener.DatagramHandler handler)
+            throws IOException {
+        this.peers = peers;
+        this.sender = DatagramChannel.open();
+        try {
+            this.listener = new TrapListener(address, handler);
+        } catch (IOException e) {
+            sender.close();
+            throw e;
+        }
+        log.info("Forwarding unmatched return traps to " + peers.length + " peers, receiving forwarded traps on "
+                + address);
+    }
+
+    /**
+     * @return the channel, or null if it is not configured
+     */
+    public static MatchChannel open(TrapListener.DatagramHandler handler) throws IOException {
+        int port = JMeterUtils.getPropDefault(PORT_PROPERTY, 0);
+        if (port <= 0) {
+            return null;
+        }
+        String host = JMeterUtils.getPropDefault(ADDRESS_PROPERTY, "0.0.0.0");
+        InetSocketAddress address = new InetSocketAddress(host, port);
+        return new MatchChannel(address, parsePeers(JMeterUtils.getPropDefault(PEERS_PROPERTY, ""), port), handler);
+    }
+
+    public void forward(byte[] datagram) throws IOException {
+        for (InetSocketAddress peer : peers) {
+            sender.send(ByteBuffer.wrap(datagram), peer);
+        }
+    }
+
+    @Override
+    public void close() {
+        listener.close();
+        try {
+            sender.close();
+        } catch (IOException e) {
+            log.warn("Close match channel", e);
+        }
+    }
+
+    private static InetSocketAddress[] parsePeers(String peers, int ownPort) throws IOException {
+        List<InetSocketAddress> result = new ArrayList<>();
+        for (String peer : peers.split(",")) {
+            peer = peer.trim();
+            if (peer.isEmpty()) {
+                continue;
+            }
+            int colon = peer.lastIndexOf(':');
+            if (colon < 0) {
+                throw new IOException("Match channel peer " + peer + " is not host:port");
+            }
+            InetSocketAddress address = new InetSocketAddress(peer.substring(0, colon),
+                    Integer.parseInt(peer.substring(colon + 1)));
+            if (address.isUnresolved()) {
+                throw new IOException("Unknown match channel peer " + peer);
+            }
+            if (address.getPort() != ownPort || !isLocal(address.getAddress())) {
+                result.add(address);
+            }
+        }
+        return result.toArray(new InetSocketAddress[0]);
+    }
+
+    private static boolean isLocal(InetAddress address) throws SocketException {
+        return address.isAnyLocalAddress() || address.isLoopbackAddress()
+                || NetworkInterface.getByInetAddress(address) != null;
+    }
+}
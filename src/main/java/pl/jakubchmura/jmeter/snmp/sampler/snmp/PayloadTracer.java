@@ -0,0 +1,114 @@
+package pl.jakubchmura.jmeter.snmp.sampler.snmp;
+
+import org.apache.jmeter.util.JMeterUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.snmp4j.smi.OctetString;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Logging of sent and received payloads, off by default. Every {@value #EVERY_PROPERTY}th payload is logged and the
+ * last {@value #HISTORY_PROPERTY} payloads are kept to be logged when a sample fails. Payloads are formatted only
+ * when they are logged.
+ */
+public class PayloadTracer {
+
+    public static final String EVERY_PROPERTY = "snmp.trace.every";
+    public static final String HISTORY_PROPERTY = "snmp.trace.history";
+
+    private static final Logger log = LoggerFactory.getLogger(PayloadTracer.class);
+
+    private static final PayloadTracer sent = new PayloadTracer("Sent");
+    private static final PayloadTracer received = new PayloadTracer("Received");
+
+    private final String direction;
+    private final long every;
+    private final AtomicReferenceArray<Object> history;
+    private final AtomicLong count = new AtomicLong();
+    private final boolean enabled;
+
+    private PayloadTracer(String direction) {
+        this.direction = direction;
+        this.every = Math.max(0, JMeterUtils.getPropDefault(EVERY_PROPERTY, 0L));
+        int historySize = Math.max(0, JMeterUtils.getPropDefault(HISTORY_PROPERTY, 0));
+        this.history = historySize == 0 ? null : new AtomicReferenceArray<>(historySize);
+        this.enabled = every > 0 || history != null;
+    }
+
+    public static PayloadTracer sent() {
+        return sent;
+    }
+
+    public static PayloadTracer received() {
+        return received;
+    }
+
+    /**
+     * Logs the payloads kept by both tracers, which are then cleared so the next failure shows only newer ones.
+     * Nothing is logged when no payload was kept since the last dump.
+     */
+    public static void dump(String reason, Object subject) {
+        if (sent.history == null && received.history == null) {
+            return;
+        }
+        StringBuilder message = new StringBuilder(reason).append(subject);
+        int length = message.length();
+        sent.drainTo(message);
+        received.drainTo(message);
+        if (message.length() > length) {
+            log.warn(message.toString());
+        }
+    }
+
+    /**
+     * @param payload a PDU or the bytes of a message, which must not be modified afterwards
+     */
+    public void trace(Object payload) {
+        if (!enabled) {
+            return;
+        }
+        long n = count.getAndIncrement();
+        if (history != null) {
+            history.set((int) (n % history.length()), payload);
+        }
+        if (every > 0 && n % every == 0) {
+            log.info(direction + " #" + n + ": " + format(payload));
+        }
+    }
+
+    /**
+     * Traces a copy of the remaining bytes of a buffer which is reused, leaving its position unchanged.
+     */
+    public void traceCopy(ByteBuffer buffer) {
+        if (!enabled) {
+            return;
+        }
+        byte[] copy = new byte[buffer.remaining()];
+        buffer.duplicate().get(copy);
+        trace(copy);
+    }
+
+    private void drainTo(StringBuilder message) {
+        if (history == null) {
+            return;
+        }
+        long last = count.get();
+        int size = history.length();
+        for (long n = Math.max(0, last - size); n < last; n++) {
+            Object payload = history.getAndSet((int) (n % size), null);
+            if (payload != null) {
+                message.append('\n').append(direction).append(" #").append(n).append(": ").append(format(payload));
+            }
+        }
+    }
+
+    private static String format(Object payload) {
+        if (payload instanceof byte[]) {
+            return new OctetString((byte[]) payload).toHexString();
+        }
+        return String.valueOf(payload);
+    }
+}
@@ -0,0 +1,97 @@
+package pl.jakubchmura.jmeter.snmp.sampler.snmp;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keys removed from a {@link CorrelationTable}, remembered with the time their trap was sent. The number of keys is
+ * bounded by a ring overwriting the oldest key, and keys older than the window are forgotten.
+ * <p>
+ * Guarded by a {@link ReentrantLock} rather than a monitor, so virtual threads waiting for it do not pin their
+ * carrier thread.
+ */
+public class RecentKeys<K> {
+
+    public static final long UNKNOWN = Long.MIN_VALUE;
+
+    private final Object[] keys;
+    private final long[] sent;
+    private final long[] removed;
+    private final Map<K, Integer> slots;
+    private final long windowNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private int next;
+
+    public RecentKeys(int capacity, long windowNanos) {
+        int size = Math.max(1, capacity);
+        this.keys = new Object[size];
+        this.sent = new long[size];
+        this.removed = new long[size];
+        this.slots = new HashMap<>(size * 4 / 3 + 1);
+        this.windowNanos = windowNanos;
+    }
+
+    public void add(K key, long sentNanos, long removedNanos) {
+        lock.lock();
+        try {
+            Object old = keys[next];
+            if (old != null) {
+                slots.remove(old, next);
+            }
+            keys[next] = key;
+            sent[next] = sentNanos;
+            removed[next] = removedNanos;
+            slots.put(key, next);
+            next = next + 1 == keys.length ? 0 : next + 1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return send time of the key, or {@link #UNKNOWN} if it is not known or older than the window
+     */
+    public long get(K key, long now) {
+        lock.lock();
+        try {
+            return find(key, now);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Moves the key to {@code target}, returning its send time like {@link #get(Object, long)}. The key added to the
+     * target is the one added here, not the one looked up with.
+     */
+    @SuppressWarnings("unchecked")
+    public long moveTo(K key, long now, RecentKeys<K> target) {
+        K stored;
+        long sentNanos;
+        lock.lock();
+        try {
+            sentNanos = find(key, now);
+            Integer slot = slots.remove(key);
+            if (slot == null) {
+                return UNKNOWN;
+            }
+            stored = (K) keys[slot];
+            keys[slot] = null;
+        } finally {
+            lock.unlock();
+        }
+        if (sentNanos != UNKNOWN) {
+            target.add(stored, sentNanos, now);
+        }
+        return sentNanos;
+    }
+
+    private long find(K key, long now) {
+        Integer slot = slots.get(key);
+        if (slot == null || now - removed[slot] > windowNanos) {
+            return UNKNOWN;
+        }
+        return sent[slot];
+    }
+}
@@ -0,0 +1,104 @@
+package pl.jakubchmura.jmeter.snmp.sampler.snmp;
+
+import org.snmp4j.PDU;
+import org.snmp4j.ScopedPDU;
+import org.snmp4j.Snmp;
+import org.snmp4j.Target;
+import org.snmp4j.event.ResponseEvent;
+import org.snmp4j.event.ResponseListener;
+import org.snmp4j.mp.SnmpConstants;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends confirmed PDUs with the asynchronous snmp4j API. The snmp4j timer reports each timed out attempt to the
+ * listener, which retransmits the PDU until the retries are used up, so no thread waits for the response and
+ * every retransmission is counted.
+ */
+public class RequestSender {
+
+    private final Snmp snmp;
+    private final Target target;
+    private final int retries;
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    /**
+     * @param target target whose own retries are replaced by {@code retries}
+     */
+    public RequestSender(Snmp snmp, Target target, int retries) {
+        this.snmp = snmp;
+        this.target = target;
+        this.retries = retries;
+        target.setRetries(0);
+    }
+
+    /**
+     * Requests sent by this sender and not yet answered or timed out.
+     */
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    public PDU createPdu(int type) {
+        PDU pdu = target.getVersion() == SnmpConstants.version3 ? new ScopedPDU() : new PDU();
+        pdu.setType(type);
+        return pdu;
+    }
+
+    public Exchange send(PDU pdu) throws IOException {
+        Exchange exchange = new Exchange(pdu);
+        outstanding.incrementAndGet();
+        try {
+            snmp.send(pdu, target, null, exchange);
+        } catch (IOException | RuntimeException e) {
+            outstanding.decrementAndGet();
+            throw e;
+        }
+        return exchange;
+    }
+
+    public class Exchange extends CompletableFuture<PDU> implements ResponseListener {
+
+        private final PDU pdu;
+        private volatile int retransmissions;
+
+        private Exchange(PDU pdu) {
+            this.pdu = pdu;
+        }
+
+        public int getRetransmissions() {
+            return retransmissions;
+        }
+
+        @Override
+        public void onResponse(ResponseEvent event) {
+            ((Snmp) event.getSource()).cancel(event.getRequest(), this);
+            if (event.getError() != null) {
+                finish();
+                completeExceptionally(event.getError());
+            } else if (event.getResponse() != null) {
+                finish();
+                complete(event.getResponse());
+            } else if (retransmissions < retries) {
+                retransmissions++;
+                try {
+                    snmp.send(pdu, target, null, this);
+                } catch (IOException | RuntimeException e) {
+                    finish();
+                    completeExceptionally(e);
+                }
+            } else {
+                finish();
+                completeExceptionally(new TimeoutException("No response within " + target.getTimeout()
+                        + " ms after " + (retransmissions + 1) + " attempts"));
+            }
+        }
+
+        private void finish() {
+            outstanding.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package pl.jakubchmura.jmeter.snmp.sampler.snmp;
+
+import org.snmp4j.PDU;
+
+import java.io.IOException;
+
+/**
+ * A received return trap kept in its encoded form. The PDU is only decoded when a sample asks for it.
+ */
+public class ReturnTrap {
+
+    private final byte[] message;
+    private final long receivedNanos;
+
+    public ReturnTrap(byte[] message, long receivedNanos) {
+        this.message = message;
+        this.receivedNanos = receivedNanos;
+    }
+
+    /**
+     * {@link System#nanoTime()} when the trap was read from the socket.
+     */
+    public long getReceivedNanos() {
+        return receivedNanos;
+    }
+
+    public int getLength() {
+        return message.length;
+    }
+
+    public PDU getPdu() throws IOException {
+        return TrapDecoder.decodePdu(message);
+    }
+}
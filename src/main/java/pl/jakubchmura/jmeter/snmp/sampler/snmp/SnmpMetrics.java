@@ -0,0 +1,304 @@
+package pl.jakubchmura.jmeter.snmp.sampler.snmp;
+
+import org.apache.jmeter.util.JMeterUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies and counters of correlated traps and confirmed requests, shared by all samplers. Send-to-receive latency
+ * ends when the return trap is read from the socket, the receive path latency is the time the datagram then waits
+ * for a worker, so a growing receive path latency points at the load generator rather than the system under test.
+ * Return traps arriving after their sample timed out are counted as late with their true latency, which shows how
+ * far the timeout is from the tail of the latency distribution.
+ * <p>
+ * The metrics are registered as the MBean {@value #OBJECT_NAME} and summarized in the log every
+ * {@value #LOG_INTERVAL_PROPERTY} seconds.
+ */
+public class SnmpMetrics implements SnmpMetricsMBean {
+
+    public static final String OBJECT_NAME = "pl.jakubchmura.jmeter.snmp:type=SnmpMetrics";
+    public static final String LOG_INTERVAL_PROPERTY = "snmp.metrics.logInterval";
+
+    private static final Logger log = LoggerFactory.getLogger(SnmpMetrics.class);
+
+    private static final SnmpMetrics instance = new SnmpMetrics();
+
+    private final LatencyHistogram sendToReceive = new LatencyHistogram();
+    private final LatencyHistogram receivePath = new LatencyHistogram();
+    private final LatencyHistogram response = new LatencyHistogram();
+    private final LatencyHistogram late = new LatencyHistogram();
+    private final LongAdder unmatched = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder forwarded = new LongAdder();
+    private final LongAdder claimed = new LongAdder();
+    private final LongAdder sendFailures = new LongAdder();
+    private final LongAdder decodeFailures = new LongAdder();
+    private LatencyHistogram.Snapshot lastSendToReceive;
+    private LatencyHistogram.Snapshot lastReceivePath;
+    private LatencyHistogram.Snapshot lastResponse;
+    private LatencyHistogram.Snapshot lastLate;
+    private long lastUnmatched;
+    private long lastDuplicates;
+    private long lastTimeouts;
+    private long lastForwarded;
+    private long lastClaimed;
+    private long lastSendFailures;
+    private long lastDecodeFailures;
+    private long lastDropped;
+
+    private SnmpMetrics() {
+        lastSendToReceive = sendToReceive.snapshot();
+        lastReceivePath = receivePath.snapshot();
+        lastResponse = response.snapshot();
+        lastLate = late.snapshot();
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            log.warn("Register " + OBJECT_NAME, e);
+        }
+        long interval = JMeterUtils.getPropDefault(LOG_INTERVAL_PROPERTY, 10L);
+        if (interval > 0) {
+            ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "SNMP metrics");
+                thread.setDaemon(true);
+                return thread;
+            });
+            reporter.scheduleAtFixedRate(this::logSummary, interval, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    public static SnmpMetrics getInstance() {
+        return instance;
+    }
+
+    public void recordSendToReceive(long nanos) {
+        sendToReceive.record(nanos);
+    }
+
+    public void recordReceivePath(long nanos) {
+        receivePath.record(nanos);
+    }
+
+    public void recordResponse(long nanos) {
+        response.record(nanos);
+    }
+
+    public void recordLate(long nanos) {
+        late.record(nanos);
+    }
+
+    public void unmatched() {
+        unmatched.increment();
+    }
+
+    public void duplicate() {
+        duplicates.increment();
+    }
+
+    public void timeouts(int count) {
+        timeouts.add(count);
+    }
+
+    /**
+     * Counts traps of batches which could not be encoded or sent.
+     */
+    public void sendFailures(int count) {
+        sendFailures.add(count);
+    }
+
+    /**
+     * Counts a received datagram which could not be processed, e.g. as it is not an SNMP message.
+     */
+    public void decodeFailure() {
+        decodeFailures.increment();
+    }
+
+    /**
+     * Counts a return trap sent to the other nodes as no local sample was waiting for it.
+     */
+    public void forwarded() {
+        forwarded.increment();
+    }
+
+    /**
+     * Counts a return trap forwarded by another node which was matched here, or found late or duplicate.
+     */
+    public void claimed() {
+        claimed.increment();
+    }
+
+    @Override
+    public long getMatched() {
+        return sendToReceive.snapshot().getCount();
+    }
+
+    @Override
+    public long getUnmatched() {
+        return unmatched.sum();
+    }
+
+    @Override
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    @Override
+    public long getLate() {
+        return late.snapshot().getCount();
+    }
+
+    @Override
+    public long getDuplicates() {
+        return duplicates.sum();
+    }
+
+    @Override
+    public long getForwarded() {
+        return forwarded.sum();
+    }
+
+    @Override
+    public long getClaimed() {
+        return claimed.sum();
+    }
+
+    @Override
+    public long getSendFailures() {
+        return sendFailures.sum();
+    }
+
+    @Override
+    public long getDecodeFailures() {
+        return decodeFailures.sum();
+    }
+
+    @Override
+    public long getDropped() {
+        return SnmpReceiver.getTotalDropped();
+    }
+
+    @Override
+    public long getPending() {
+        return SnmpReceiver.getTotalPending();
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return SnmpReceiver.getTotalQueueDepth();
+    }
+
+    @Override
+    public double getSendToReceiveMeanMillis() {
+        return sendToReceive.snapshot().getMeanMillis();
+    }
+
+    @Override
+    public double getSendToReceiveP99Millis() {
+        return sendToReceive.snapshot().getPercentileMillis(99);
+    }
+
+    @Override
+    public double getSendToReceiveMaxMillis() {
+        return sendToReceive.snapshot().getMaxMillis();
+    }
+
+    @Override
+    public double getReceivePathMeanMillis() {
+        return receivePath.snapshot().getMeanMillis();
+    }
+
+    @Override
+    public double getReceivePathP99Millis() {
+        return receivePath.snapshot().getPercentileMillis(99);
+    }
+
+    @Override
+    public double getReceivePathMaxMillis() {
+        return receivePath.snapshot().getMaxMillis();
+    }
+
+    @Override
+    public double getLateP99Millis() {
+        return late.snapshot().getPercentileMillis(99);
+    }
+
+    @Override
+    public double getLateMaxMillis() {
+        return late.snapshot().getMaxMillis();
+    }
+
+    @Override
+    public long getResponses() {
+        return response.snapshot().getCount();
+    }
+
+    @Override
+    public double getResponseP99Millis() {
+        return response.snapshot().getPercentileMillis(99);
+    }
+
+    private void logSummary() {
+        LatencyHistogram.Snapshot sendToReceiveNow = sendToReceive.snapshot();
+        LatencyHistogram.Snapshot receivePathNow = receivePath.snapshot();
+        LatencyHistogram.Snapshot responseNow = response.snapshot();
+        LatencyHistogram.Snapshot lateNow = late.snapshot();
+        LatencyHistogram.Snapshot matched = sendToReceiveNow.minus(lastSendToReceive);
+        LatencyHistogram.Snapshot received = receivePathNow.minus(lastReceivePath);
+        LatencyHistogram.Snapshot responses = responseNow.minus(lastResponse);
+        LatencyHistogram.Snapshot lateArrivals = lateNow.minus(lastLate);
+        long unmatchedNow = unmatched.sum();
+        long duplicatesNow = duplicates.sum();
+        long timeoutsNow = timeouts.sum();
+        long forwardedNow = forwarded.sum();
+        long claimedNow = claimed.sum();
+        long sendFailuresNow = sendFailures.sum();
+        long decodeFailuresNow = decodeFailures.sum();
+        long droppedNow = SnmpReceiver.getTotalDropped();
+        lastSendToReceive = sendToReceiveNow;
+        lastReceivePath = receivePathNow;
+        lastResponse = responseNow;
+        lastLate = lateNow;
+
+        long pending = SnmpReceiver.getTotalPending();
+        if (matched.getCount() == 0 && received.getCount() == 0 && responses.getCount() == 0
+                && lateArrivals.getCount() == 0 && duplicatesNow == lastDuplicates && unmatchedNow == lastUnmatched
+                && timeoutsNow == lastTimeouts && droppedNow == lastDropped && forwardedNow == lastForwarded
+                && claimedNow == lastClaimed && sendFailuresNow == lastSendFailures
+                && decodeFailuresNow == lastDecodeFailures && pending == 0) {
+            return;
+        }
+        log.info(String.format(Locale.ROOT, "Return traps: %d matched, %d late, %d duplicate, %d unmatched, "
+                        + "%d timed out, %d forwarded, %d claimed from peers, %d dropped, %d not decoded, %d pending, "
+                        + "queue depth %d; "
+                        + "send to receive %s; receive path %s; late %s; responses: %d, %s; %d traps failed to send",
+                matched.getCount(), lateArrivals.getCount(), duplicatesNow - lastDuplicates,
+                unmatchedNow - lastUnmatched, timeoutsNow - lastTimeouts,
+                forwardedNow - lastForwarded, claimedNow - lastClaimed, Math.max(0, droppedNow - lastDropped),
+                decodeFailuresNow - lastDecodeFailures, pending, SnmpReceiver.getTotalQueueDepth(), format(matched), format(received), format(lateArrivals),
+                responses.getCount(), format(responses), sendFailuresNow - lastSendFailures));
+        lastUnmatched = unmatchedNow;
+        lastDuplicates = duplicatesNow;
+        lastTimeouts = timeoutsNow;
+        lastForwarded = forwardedNow;
+        lastClaimed = claimedNow;
+        lastSendFailures = sendFailuresNow;
+        lastDecodeFailures = decodeFailuresNow;
+        lastDropped = droppedNow;
+    }
+
+    private static String format(LatencyHistogram.Snapshot snapshot) {
+        return String.format(Locale.ROOT, "mean %.3f p50 %.3f p99 %.3f p99.9 %.3f max %.3f ms",
+                snapshot.getMeanMillis(), snapshot.getPercentileMillis(50), snapshot.getPercentileMillis(99),
+                snapshot.getPercentileMillis(99.9), snapshot.getMaxMillis());
+    }
+}
@@ -0,0 +1,51 @@
+package pl.jakubchmura.jmeter.snmp.sampler.snmp;
+
+/**
+ * Counters since the start of the JVM and gauges of the receivers, latencies in milliseconds.
+ */
+public interface SnmpMetricsMBean {
+
+    long getMatched();
+
+    long getUnmatched();
+
+    long getTimeouts();
+
+    long getLate();
+
+    long getDuplicates();
+
+    long getForwarded();
+
+    long getClaimed();
+
+    long getSendFailures();
+
+    long getDecodeFailures();
+
+    long getDropped();
+
+    long getPending();
+
+    int getQueueDepth();
+
+    double getSendToReceiveMeanMillis();
+
+    double getSendToReceiveP99Millis();
+
+    double getSendToReceiveMaxMillis();
+
+    double getReceivePathMeanMillis();
+
+    double getReceivePathP99Millis();
+
+    double getReceivePathMaxMillis();
+
+    double getLateP99Millis();
+
+    double getLateMaxMillis();
+
+    long getResponses();
+
+    double getResponseP99Millis();
+}
@@ -2,72 +2,271 @@ package pl.jakubchmura.jmeter.snmp.sampler.snmp;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.snmp4j.CommandResponder;
-import org.snmp4j.CommandResponderEvent;
-import org.snmp4j.PDU;
-import org.snmp4j.Snmp;
-import org.snmp4j.smi.Address;
 import org.snmp4j.smi.OID;
-import org.snmp4j.smi.Variable;
-import org.snmp4j.transport.DefaultUdpTransportMapping;
+import org.snmp4j.smi.UdpAddress;
 
 import java.io.IOException;
-import java.util.Collections;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
 
-public class SnmpReceiver implements CommandResponder {
+/**
+ * Listener for return traps on one address. Samplers register a {@link Flow} per correlation OID, the listener is
+ * opened with the first flow and closed when the last flow is released. Return traps no flow is waiting for are
+ * forwarded to the other nodes of a distributed test when a {@link MatchChannel} is configured.
+ */
+public class SnmpReceiver {
 
-    private static volatile SnmpReceiver instance;
-    private static final Object lock = new Object();
+    private static final Map<UdpAddress, SnmpReceiver> receivers = new HashMap<>();
+    // a lock rather than a monitor: acquire() opens sockets while holding it, which would pin a virtual thread
+    private static final ReentrantLock lock = new ReentrantLock();
+    // copy of the receivers for matching forwarded traps without the lock
+    private static volatile SnmpReceiver[] active = new SnmpReceiver[0];
+    private static volatile MatchChannel matchChannel;
+    private static final AtomicBoolean version3Reported = new AtomicBoolean();
 
     private static final Logger log = LoggerFactory.getLogger(SnmpReceiver.class);
 
-    private final Map<String, CompletableFuture<PDU>> futures = Collections.synchronizedMap(new HashMap<>());
-    private final Snmp snmp;
-    private final OID correlationOid;
+    private final UdpAddress listenAddress;
+    private final TrapListener listener;
+    private volatile Flow[] flows = new Flow[0];
 
-    private SnmpReceiver(Address listenAddress, OID correlationOid) throws IOException {
-        this.snmp = new Snmp(new DefaultUdpTransportMapping());
-        boolean b = this.snmp.addNotificationListener(listenAddress, this);
-        log.debug("Adding notification listener: " + b);
-        this.correlationOid = correlationOid;
+    private SnmpReceiver(UdpAddress listenAddress) throws IOException {
+        this.listenAddress = listenAddress;
+        InetSocketAddress address = new InetSocketAddress(listenAddress.getInetAddress(), listenAddress.getPort());
+        this.listener = new TrapListener(address, this::processDatagram);
     }
 
-    public static SnmpReceiver getInstance(Address listenAddress, OID correlationOid) throws IOException {
-        SnmpReceiver r = instance;
-        if (r == null) {
-            synchronized (lock) {
-                r = instance;
-                if (r == null) {
-                    r = new SnmpReceiver(listenAddress, correlationOid);
-                    instance = r;
+    public static Flow acquire(UdpAddress listenAddress, OID correlationOid) throws IOException {
+        lock.lock();
+        try {
+            SnmpReceiver receiver = receivers.get(listenAddress);
+            if (receiver == null) {
+                if (receivers.isEmpty()) {
+                    matchChannel = MatchChannel.open(SnmpReceiver::processForwarded);
                 }
+                try {
+                    receiver = new SnmpReceiver(listenAddress);
+                } catch (IOException e) {
+                    if (receivers.isEmpty()) {
+                        closeMatchChannel();
+                    }
+                    throw e;
+                }
+                receivers.put(listenAddress, receiver);
+                active = receivers.values().toArray(new SnmpReceiver[0]);
+            }
+            Flow flow = receiver.getFlow(correlationOid);
+            if (flow == null) {
+                flow = new Flow(receiver, correlationOid);
+                receiver.flows = append(receiver.flows, flow);
+                log.info("Correlating return traps on " + listenAddress + " by " + correlationOid);
+            }
+            flow.references++;
+            return flow;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public static void release(Flow flow) {
+        lock.lock();
+        try {
+            SnmpReceiver receiver = flow.receiver;
+            if (flow.references == 0 || --flow.references > 0) {
+                return;
+            }
+            flow.futures.close("Released return trap listener on " + receiver.listenAddress + " for "
+                    + flow.correlationOid);
+            receiver.flows = remove(receiver.flows, flow);
+            if (receiver.flows.length == 0) {
+                log.info("Closing return trap listener on " + receiver.listenAddress);
+                receiver.listener.close();
+                receivers.remove(receiver.listenAddress);
+                active = receivers.values().toArray(new SnmpReceiver[0]);
+                if (receivers.isEmpty()) {
+                    closeMatchChannel();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void processDatagram(byte[] datagram, long receivedNanos) throws IOException {
+        PayloadTracer.received().trace(datagram);
+        SnmpMetrics metrics = SnmpMetrics.getInstance();
+        metrics.recordReceivePath(System.nanoTime() - receivedNanos);
+        if (match(datagram, receivedNanos)) {
+            return;
+        }
+        if (TrapDecoder.isVersion3(datagram)) {
+            metrics.unmatched();
+            if (version3Reported.compareAndSet(false, true)) {
+                log.warn("Received an SNMPv3 return trap on " + listenAddress
+                        + ", only SNMPv1 and v2c return traps can be correlated");
+            }
+            return;
+        }
+        MatchChannel channel = matchChannel;
+        if (channel != null) {
+            channel.forward(datagram);
+            metrics.forwarded();
+            return;
+        }
+        metrics.unmatched();
+        log.debug("Received a trap for which there is no waiting sample");
+    }
+
+    /**
+     * Matches a return trap forwarded by another node. It is not counted as unmatched when no flow is waiting for
+     * it, as it is usually meant for a third node.
+     */
+    public static void processForwarded(byte[] datagram, long receivedNanos) throws IOException {
+        for (SnmpReceiver receiver : active) {
+            if (receiver.match(datagram, receivedNanos)) {
+                SnmpMetrics.getInstance().claimed();
+                return;
             }
         }
-        return r;
     }
 
-    @Override
-    public void processPdu(CommandResponderEvent event) {
-        log.debug("Received event: " + event);
-        PDU pdu = event.getPDU();
-        String value = getCorrelationValue(pdu);
-        CompletableFuture<PDU> future = futures.remove(value);
-        if (future == null) {
-            log.warn("Received a trap for which there is no waiting sample");
-        } else {
-            future.complete(pdu);
+    /**
+     * Completes the sample waiting for the return trap, or records it as late or duplicate.
+     *
+     * @return false if the correlation value is not known
+     */
+    private boolean match(byte[] datagram, long receivedNanos) throws IOException {
+        for (Flow flow : flows) {
+            CorrelationKey value = flow.getCorrelationValue(datagram);
+            if (value != null) {
+                CompletableFuture<ReturnTrap> future = flow.futures.remove(value);
+                if (future != null) {
+                    future.complete(new ReturnTrap(datagram, receivedNanos));
+                    return true;
+                }
+            }
+        }
+        for (Flow flow : flows) {
+            CorrelationKey value = flow.getCorrelationValue(datagram);
+            if (value != null && flow.futures.miss(value, receivedNanos) != CorrelationTable.Miss.UNKNOWN) {
+                return true;
+            }
         }
+        return false;
     }
 
-    public synchronized void addFuture(String value, CompletableFuture<PDU> future) {
-        futures.put(value, future);
+    private static void closeMatchChannel() {
+        if (matchChannel != null) {
+            matchChannel.close();
+            matchChannel = null;
+        }
     }
 
-    private String getCorrelationValue(PDU pdu) {
-        Variable variable = pdu.getVariable(correlationOid);
-        return variable.toString();
+    public static long getTotalPending() {
+        lock.lock();
+        try {
+            long pending = 0;
+            for (SnmpReceiver receiver : receivers.values()) {
+                for (Flow flow : receiver.flows) {
+                    pending += flow.getPendingCount();
+                }
+            }
+            return pending;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public static int getTotalQueueDepth() {
+        lock.lock();
+        try {
+            int depth = 0;
+            for (SnmpReceiver receiver : receivers.values()) {
+                depth += receiver.listener.getQueueDepth();
+            }
+            return depth;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public static long getTotalDropped() {
+        lock.lock();
+        try {
+            long dropped = 0;
+            for (SnmpReceiver receiver : receivers.values()) {
+                dropped += receiver.getDroppedCount();
+            }
+            return dropped;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getDroppedCount() {
+        return listener.getDropped();
+    }
+
+    private Flow getFlow(OID correlationOid) {
+        for (Flow flow : flows) {
+            if (flow.correlationOid.equals(correlationOid)) {
+                return flow;
+            }
+        }
+        return null;
+    }
+
+    private static Flow[] append(Flow[] flows, Flow flow) {
+        Flow[] result = Arrays.copyOf(flows, flows.length + 1);
+        result[flows.length] = flow;
+        return result;
+    }
+
+    private static Flow[] remove(Flow[] flows, Flow flow) {
+        return Arrays.stream(flows).filter(f -> f != flow).toArray(Flow[]::new);
+    }
+
+    /**
+     * Samples waiting for return traps on one listener, correlated by one OID.
+     */
+    public static class Flow {
+
+        private final SnmpReceiver receiver;
+        private final OID correlationOid;
+        private final TrapDecoder decoder;
+        private final CorrelationTable<CorrelationKey, ReturnTrap> futures = new CorrelationTable<>();
+        private int references;
+
+        private Flow(SnmpReceiver receiver, OID correlationOid) throws IOException {
+            this.receiver = receiver;
+            this.correlationOid = correlationOid;
+            this.decoder = new TrapDecoder(correlationOid);
+        }
+
+        public SnmpReceiver getReceiver() {
+            return receiver;
+        }
+
+        public void addFuture(CorrelationKey value, CompletableFuture<ReturnTrap> future, long timeoutMillis) {
+            futures.put(value, future, timeoutMillis);
+        }
+
+        public boolean removeFuture(CorrelationKey value, CompletableFuture<ReturnTrap> future) {
+            return futures.remove(value, future);
+        }
+
+        public long getPendingCount() {
+            return futures.size();
+        }
+
+        private CorrelationKey getCorrelationValue(byte[] datagram) throws IOException {
+            int offset = decoder.findCorrelationValue(datagram);
+            return offset < 0 ? null : TrapDecoder.valueKey(datagram, offset);
+        }
     }
 }
@@ -0,0 +1,129 @@
+package pl.jakubchmura.jmeter.snmp.sampler.snmp;
+
+import org.apache.jmeter.util.JMeterUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.snmp4j.Snmp;
+import org.snmp4j.transport.DefaultUdpTransportMapping;
+
+import java.io.IOException;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sender sockets shared by all sampler threads. The pool is opened by the first thread that acquires it and closed
+ * when the last thread releases it.
+ */
+public class SnmpTransportPool {
+
+    public static final String POOL_SIZE_PROPERTY = "snmp.transport.poolSize";
+    public static final String SELECTION_PROPERTY = "snmp.transport.selection";
+
+    private static final String SELECTION_THREAD_HASH = "threadHash";
+
+    private static final Object lock = new Object();
+    private static SnmpTransportPool instance;
+    private static int references;
+
+    private static final Logger log = LoggerFactory.getLogger(SnmpTransportPool.class);
+
+    private final Transport[] transports;
+    private final boolean threadHash;
+    private final AtomicInteger next = new AtomicInteger();
+
+    private SnmpTransportPool(int size, boolean threadHash) throws IOException {
+        this.transports = new Transport[size];
+        this.threadHash = threadHash;
+        try {
+            for (int i = 0; i < size; i++) {
+                transports[i] = new Transport();
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    public static SnmpTransportPool acquire() throws IOException {
+        synchronized (lock) {
+            if (instance == null) {
+                int size = Math.max(1, JMeterUtils.getPropDefault(POOL_SIZE_PROPERTY, Runtime.getRuntime().availableProcessors()));
+                boolean threadHash = SELECTION_THREAD_HASH.equals(JMeterUtils.getPropDefault(SELECTION_PROPERTY, ""));
+                log.info("Opening SNMP transport pool with " + size + " sockets");
+                instance = new SnmpTransportPool(size, threadHash);
+            }
+            references++;
+            return instance;
+        }
+    }
+
+    public static void release() {
+        synchronized (lock) {
+            if (references == 0) {
+                return;
+            }
+            references--;
+            if (references == 0) {
+                log.info("Closing SNMP transport pool");
+                instance.close();
+                instance = null;
+            }
+        }
+    }
+
+    public Transport select() {
+        int index;
+        if (threadHash) {
+            index = Long.hashCode(Thread.currentThread().getId());
+        } else {
+            index = next.getAndIncrement();
+        }
+        return transports[Math.floorMod(index, transports.length)];
+    }
+
+    private void close() {
+        for (Transport transport : transports) {
+            if (transport != null) {
+                transport.close();
+            }
+        }
+    }
+
+    public static class Transport {
+
+        private final Snmp snmp;
+        private final DatagramChannel channel;
+
+        private Transport() throws IOException {
+            this.snmp = new Snmp(new DefaultUdpTransportMapping());
+            try {
+                snmp.listen();
+                this.channel = DatagramChannel.open();
+            } catch (IOException e) {
+                snmp.close();
+                throw e;
+            }
+        }
+
+        public Snmp getSnmp() {
+            return snmp;
+        }
+
+        public DatagramChannel getChannel() {
+            return channel;
+        }
+
+        private void close() {
+            try {
+                snmp.close();
+            } catch (IOException e) {
+                log.warn("Close SNMP", e);
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Close SNMP channel", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package pl.jakubchmura.jmeter.snmp.sampler.snmp;
+
+import org.snmp4j.PDU;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.VariableBinding;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * Walks MIB tables with concurrent GETBULK pipelines. Each root is treated as a table: its columns are discovered
+ * with GETNEXT and every column is fetched by its own chain of GETBULK requests, at most {@code pipelines} requests
+ * being in flight at a time. Variable bindings are handed to the consumer as the responses arrive, one response at a
+ * time.
+ */
+public class TableWalker {
+
+    private final RequestSender sender;
+    private final int maxRepetitions;
+    private final int pipelines;
+
+    public TableWalker(RequestSender sender, int maxRepetitions, int pipelines) {
+        this.sender = sender;
+        this.maxRepetitions = maxRepetitions;
+        this.pipelines = pipelines;
+    }
+
+    /**
+     * Walks the roots and waits for the result. The walk is abandoned when no request completes for
+     * {@code idleMillis}, which should be at least the time a request may take including its retries.
+     */
+    public Result walk(List<OID> roots, Consumer<VariableBinding> consumer, long idleMillis)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        Walk walk = new Walk(roots, consumer);
+        walk.schedule();
+        long completed = 0;
+        while (true) {
+            try {
+                return walk.done.get(idleMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                long now = walk.getCompletedRequests();
+                if (now == completed) {
+                    TimeoutException idle = new TimeoutException("No response for " + idleMillis
+                            + " ms, walk abandoned after " + now + " requests");
+                    walk.done.completeExceptionally(idle);
+                    throw idle;
+                }
+                completed = now;
+            }
+        }
+    }
+
+    public static class Result {
+
+        private long rows;
+        private long varbinds;
+        private long requests;
+        private long bytes;
+        private long errors;
+        private String lastError;
+        private long minLatency = Long.MAX_VALUE;
+        private long maxLatency;
+        private long totalLatency;
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getVarbinds() {
+            return varbinds;
+        }
+
+        public long getRequests() {
+            return requests;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public String getLastError() {
+            return lastError;
+        }
+
+        public long getMinLatencyNanos() {
+            return requests == 0 ? 0 : minLatency;
+        }
+
+        public long getMaxLatencyNanos() {
+            return maxLatency;
+        }
+
+        public long getAvgLatencyNanos() {
+            return requests == 0 ? 0 : totalLatency / requests;
+        }
+
+        private void request(long latency, PDU response) {
+            requests++;
+            minLatency = Math.min(minLatency, latency);
+            maxLatency = Math.max(maxLatency, latency);
+            totalLatency += latency;
+            if (response != null) {
+                bytes += response.getBERLength();
+            }
+        }
+
+        private void error(String message) {
+            errors++;
+            lastError = message;
+        }
+    }
+
+    private static class Range {
+
+        private final int root;
+        private final OID end;
+        private OID next;
+        private long rows;
+
+        private Range(int root, OID start, OID end) {
+            this.root = root;
+            this.next = start;
+            this.end = end;
+        }
+    }
+
+    private class Walk {
+
+        private final List<OID> roots;
+        private final Consumer<VariableBinding> consumer;
+        private final long[] rows;
+        private final ArrayDeque<Range> ranges = new ArrayDeque<>();
+        private final Result result = new Result();
+        private final CompletableFuture<Result> done = new CompletableFuture<>();
+        private int probeRoot;
+        private OID probeFrom;
+        private boolean probing;
+        private int active;
+
+        private Walk(List<OID> roots, Consumer<VariableBinding> consumer) {
+            this.roots = roots;
+            this.consumer = consumer;
+            this.rows = new long[roots.size()];
+            this.probeFrom = roots.isEmpty() ? null : roots.get(0);
+        }
+
+        private synchronized long getCompletedRequests() {
+            return result.requests;
+        }
+
+        private synchronized void schedule() {
+            if (done.isDone()) {
+                return;
+            }
+            while (active < pipelines) {
+                if (!probing && probeFrom != null) {
+                    probing = true;
+                    active++;
+                    probe(probeRoot, probeFrom);
+                } else if (!ranges.isEmpty()) {
+                    active++;
+                    fetch(ranges.poll());
+                } else {
+                    break;
+                }
+            }
+            if (active == 0 && probeFrom == null && ranges.isEmpty() && !done.isDone()) {
+                for (long count : rows) {
+                    result.rows += count;
+                }
+                done.complete(result);
+            }
+        }
+
+        private void probe(int root, OID from) {
+            PDU pdu = sender.createPdu(PDU.GETNEXT);
+            pdu.add(new VariableBinding(from));
+            send(pdu).whenComplete((response, error) -> {
+                synchronized (this) {
+                    probing = false;
+                    active--;
+                    if (error != null) {
+                        result.error(error.getLocalizedMessage());
+                        nextRoot();
+                    } else if (response.getErrorStatus() != PDU.noError) {
+                        result.error(response.getErrorStatusText());
+                        nextRoot();
+                    } else if (response.size() == 0) {
+                        result.error("Empty response to GETNEXT " + from);
+                        nextRoot();
+                    } else {
+                        discovered(root, response.get(0));
+                    }
+                }
+                schedule();
+            });
+        }
+
+        private void discovered(int root, VariableBinding binding) {
+            OID rootOid = roots.get(root);
+            OID oid = binding.getOid();
+            if (binding.isException() || !oid.startsWith(rootOid)) {
+                nextRoot();
+            } else if (oid.size() > rootOid.size() + 2) {
+                OID column = new OID(oid.getValue(), 0, rootOid.size() + 2);
+                ranges.add(new Range(root, column, column.nextPeer()));
+                probeFrom = column.nextPeer();
+            } else {
+                ranges.add(new Range(root, rootOid, rootOid.nextPeer()));
+                nextRoot();
+            }
+        }
+
+        private void nextRoot() {
+            probeRoot++;
+            probeFrom = probeRoot < roots.size() ? roots.get(probeRoot) : null;
+        }
+
+        private void fetch(Range range) {
+            PDU pdu = sender.createPdu(PDU.GETBULK);
+            pdu.setMaxRepetitions(maxRepetitions);
+            pdu.add(new VariableBinding(range.next));
+            send(pdu).whenComplete((response, error) -> {
+                synchronized (this) {
+                    active--;
+                    boolean finished = true;
+                    if (error != null) {
+                        result.error(error.getLocalizedMessage());
+                    } else if (response.getErrorStatus() != PDU.noError) {
+                        result.error(response.getErrorStatusText());
+                    } else {
+                        finished = consume(range, response);
+                    }
+                    if (finished) {
+                        rows[range.root] = Math.max(rows[range.root], range.rows);
+                    } else {
+                        ranges.addFirst(range);
+                    }
+                }
+                schedule();
+            });
+        }
+
+        private boolean consume(Range range, PDU response) {
+            int count = 0;
+            boolean finished = false;
+            if (response.size() == 0) {
+                result.error("Empty response to GETBULK " + range.next);
+                finished = true;
+            }
+            for (VariableBinding binding : response.getVariableBindings()) {
+                OID oid = binding.getOid();
+                if (binding.isException() || oid.compareTo(range.end) >= 0) {
+                    finished = true;
+                    break;
+                }
+                if (oid.compareTo(range.next) <= 0) {
+                    // the agent went backwards, stop instead of looping forever
+                    result.error("OID not increasing: " + oid);
+                    finished = true;
+                    break;
+                }
+                range.next = oid;
+                count++;
+                if (consumer != null) {
+                    consumer.accept(binding);
+                }
+            }
+            range.rows += count;
+            result.varbinds += count;
+            return finished;
+        }
+
+        private CompletableFuture<PDU> send(PDU pdu) {
+            long start = System.nanoTime();
+            CompletableFuture<PDU> future;
+            try {
+                future = sender.send(pdu);
+            } catch (IOException | RuntimeException e) {
+                future = new CompletableFuture<>();
+                future.completeExceptionally(e);
+            }
+            return future.whenComplete((response, error) -> {
+                synchronized (this) {
+                    result.request(System.nanoTime() - start, response);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package pl.jakubchmura.jmeter.snmp.sampler.snmp;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Recorded traps replayed from a memory-mapped file. The file is indexed once when it is opened and shared by all
+ * samplers replaying it, each of which reads it through its own {@link Cursor}.
+ * <p>
+ * Two formats are read: a libpcap capture (Ethernet, Linux cooked or raw IPv4, UDP payloads are taken as traps) and
+ * a length-prefixed file where each record is a 4 byte length of the message, an 8 byte capture time in microseconds
+ * and the BER encoded message, all big-endian.
+ */
+public class TrapCorpus {
+
+    private static final int PCAP_MICROS = 0xa1b2c3d4;
+    private static final int PCAP_NANOS = 0xa1b23c4d;
+    private static final int LINKTYPE_ETHERNET = 1;
+    private static final int LINKTYPE_RAW = 101;
+    private static final int LINKTYPE_LINUX_SLL = 113;
+    private static final int LINKTYPE_IPV4 = 228;
+    private static final int ETHERTYPE_IPV4 = 0x0800;
+    private static final int ETHERTYPE_VLAN = 0x8100;
+    private static final int IP_PROTOCOL_UDP = 17;
+    private static final int UDP_HEADER_LENGTH = 8;
+
+    private static final Map<String, TrapCorpus> corpora = new HashMap<>();
+    private static final Object lock = new Object();
+
+    private static final Logger log = LoggerFactory.getLogger(TrapCorpus.class);
+
+    private final String path;
+    private final MappedByteBuffer data;
+    private int[] offsets = new int[1024];
+    private int[] lengths = new int[1024];
+    private long[] timestamps = new long[1024];
+    private int size;
+    private int references;
+
+    private TrapCorpus(String path) throws IOException {
+        this.path = path;
+        try (RandomAccessFile file = new RandomAccessFile(path, "r")) {
+            FileChannel channel = file.getChannel();
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Trap corpus " + path + " is larger than 2 GB");
+            }
+            this.data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        ByteBuffer index = data.duplicate();
+        if (index.remaining() >= 4 && isPcap(index.getInt(0))) {
+            indexPcap(index);
+        } else {
+            indexLengthPrefixed(index);
+        }
+        if (size == 0) {
+            throw new IOException("Trap corpus " + path + " contains no traps");
+        }
+        log.info("Indexed " + size + " traps of " + path);
+    }
+
+    public static TrapCorpus acquire(String path) throws IOException {
+        String key = new File(path).getCanonicalPath();
+        synchronized (lock) {
+            TrapCorpus corpus = corpora.get(key);
+            if (corpus == null) {
+                corpus = new TrapCorpus(key);
+                corpora.put(key, corpus);
+            }
+            corpus.references++;
+            return corpus;
+        }
+    }
+
+    public static void release(TrapCorpus corpus) {
+        synchronized (lock) {
+            if (corpus.references > 0 && --corpus.references == 0) {
+                corpora.remove(corpus.path);
+            }
+        }
+    }
+
+    /**
+     * Capture time of the trap in nanoseconds, relative to the first trap of the corpus.
+     */
+    public long getTimestamp(int index) {
+        return timestamps[index];
+    }
+
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    private static boolean isPcap(int magic) {
+        return magic == PCAP_MICROS || magic == PCAP_NANOS
+                || magic == Integer.reverseBytes(PCAP_MICROS) || magic == Integer.reverseBytes(PCAP_NANOS);
+    }
+
+    private void indexPcap(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < 24) {
+            throw new IOException("Truncated pcap header in " + path);
+        }
+        // record headers are in the byte order of the capturing host, packets in network byte order
+        ByteBuffer header = buffer.duplicate();
+        int magic = header.getInt(0);
+        if (magic == Integer.reverseBytes(PCAP_MICROS) || magic == Integer.reverseBytes(PCAP_NANOS)) {
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            magic = Integer.reverseBytes(magic);
+        }
+        long fractionNanos = magic == PCAP_NANOS ? 1 : 1000;
+        int linkType = header.getInt(20);
+        if (linkType != LINKTYPE_ETHERNET && linkType != LINKTYPE_RAW && linkType != LINKTYPE_LINUX_SLL
+                && linkType != LINKTYPE_IPV4) {
+            throw new IOException("Unsupported pcap link type " + linkType + " in " + path);
+        }
+        int position = 24;
+        long first = -1;
+        while (position + 16 <= buffer.limit()) {
+            long seconds = header.getInt(position) & 0xffffffffL;
+            long fraction = header.getInt(position + 4) & 0xffffffffL;
+            int captured = header.getInt(position + 8);
+            int packet = position + 16;
+            if (captured < 0 || packet + captured > buffer.limit()) {
+                log.warn("Truncated packet at offset " + position + " of " + path);
+                break;
+            }
+            long timestamp = seconds * 1_000_000_000L + fraction * fractionNanos;
+            if (first < 0) {
+                first = timestamp;
+            }
+            addUdpPayload(buffer, linkType, packet, captured, timestamp - first);
+            position = packet + captured;
+        }
+    }
+
+    private void addUdpPayload(ByteBuffer buffer, int linkType, int packet, int captured, long timestamp) {
+        int ip = packet;
+        int end = packet + captured;
+        if (linkType == LINKTYPE_ETHERNET || linkType == LINKTYPE_LINUX_SLL) {
+            int typeOffset = linkType == LINKTYPE_ETHERNET ? 12 : 14;
+            if (captured < typeOffset + 2) {
+                return;
+            }
+            int etherType = buffer.getShort(packet + typeOffset) & 0xffff;
+            ip = packet + typeOffset + 2;
+            if (etherType == ETHERTYPE_VLAN && ip + 4 <= end) {
+                etherType = buffer.getShort(ip + 2) & 0xffff;
+                ip += 4;
+            }
+            if (etherType != ETHERTYPE_IPV4) {
+                return;
+            }
+        }
+        if (ip + 20 > end || (buffer.get(ip) & 0xf0) != 0x40 || (buffer.get(ip + 9) & 0xff) != IP_PROTOCOL_UDP) {
+            return;
+        }
+        if ((buffer.getShort(ip + 6) & 0x3fff) != 0) {
+            // fragments cannot be replayed as single datagrams
+            return;
+        }
+        int udp = ip + (buffer.get(ip) & 0x0f) * 4;
+        if (udp + UDP_HEADER_LENGTH > end) {
+            return;
+        }
+        int length = Math.min((buffer.getShort(udp + 4) & 0xffff) - UDP_HEADER_LENGTH, end - udp - UDP_HEADER_LENGTH);
+        if (length > 0) {
+            add(udp + UDP_HEADER_LENGTH, length, timestamp);
+        }
+    }
+
+    private void indexLengthPrefixed(ByteBuffer buffer) throws IOException {
+        int position = 0;
+        long first = -1;
+        while (position + 12 <= buffer.limit()) {
+            int length = buffer.getInt(position);
+            long micros = buffer.getLong(position + 4);
+            int message = position + 12;
+            if (length <= 0 || length > TrapEncoder.MAX_MESSAGE_SIZE || message + length > buffer.limit()) {
+                throw new IOException("Invalid record at offset " + position + " of " + path);
+            }
+            if (first < 0) {
+                first = micros;
+            }
+            add(message, length, (micros - first) * 1000);
+            position = message + length;
+        }
+    }
+
+    private void add(int offset, int length, long timestamp) {
+        if (size == offsets.length) {
+            offsets = Arrays.copyOf(offsets, size * 2);
+            lengths = Arrays.copyOf(lengths, size * 2);
+            timestamps = Arrays.copyOf(timestamps, size * 2);
+        }
+        offsets[size] = offset;
+        lengths[size] = length;
+        timestamps[size] = timestamp;
+        size++;
+    }
+
+    /**
+     * Position of one reader in the corpus. Wraps around to the first trap after the last one.
+     */
+    public class Cursor {
+
+        private final ByteBuffer view = data.duplicate();
+        private int index;
+
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * Returns the current trap as a view of the mapped file and moves to the next one.
+         */
+        public ByteBuffer next() {
+            int offset = offsets[index];
+            view.limit(offset + lengths[index]).position(offset);
+            index = index + 1 == size ? 0 : index + 1;
+            return view;
+        }
+
+        public TrapCorpus getCorpus() {
+            return TrapCorpus.this;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package pl.jakubchmura.jmeter.snmp.sampler.snmp;
+
+import org.snmp4j.PDU;
+import org.snmp4j.PDUv1;
+import org.snmp4j.asn1.BER;
+import org.snmp4j.asn1.BERInputStream;
+import org.snmp4j.mp.SnmpConstants;
+import org.snmp4j.smi.OID;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Finds the value bound to the correlation OID in a raw community based SNMP message without decoding the PDU.
+ * SNMPv3 messages are not searched, their PDU may be encrypted with keys of the system under test.
+ */
+public class TrapDecoder {
+
+    private static final int V1_TRAP_HEADER_FIELDS = 5;
+    private static final int PDU_HEADER_FIELDS = 3;
+
+    private final byte[] correlationOid;
+
+    public TrapDecoder(OID correlationOid) throws IOException {
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        correlationOid.encodeBER(encoded);
+        this.correlationOid = encoded.toByteArray();
+    }
+
+    /**
+     * Returns the offset of the encoded value bound to the correlation OID or -1 if the message does not contain it.
+     */
+    public int findCorrelationValue(byte[] message) throws IOException {
+        Reader reader = new Reader(message);
+        reader.enter(BER.SEQUENCE);
+        if (reader.readInteger() == SnmpConstants.version3) {
+            return -1;
+        }
+        reader.skip();
+        boolean v1Trap = reader.peekType() == (PDU.V1TRAP & 0xFF);
+        reader.enter();
+        int headerFields = v1Trap ? V1_TRAP_HEADER_FIELDS : PDU_HEADER_FIELDS;
+        for (int i = 0; i < headerFields; i++) {
+            reader.skip();
+        }
+        int bindingsEnd = reader.enter(BER.SEQUENCE);
+        while (reader.position < bindingsEnd) {
+            int bindingEnd = reader.enter(BER.SEQUENCE);
+            if (reader.matches(correlationOid)) {
+                return reader.position + correlationOid.length;
+            }
+            reader.position = bindingEnd;
+        }
+        return -1;
+    }
+
+    public static boolean isVersion3(byte[] message) throws IOException {
+        Reader reader = new Reader(message);
+        reader.enter(BER.SEQUENCE);
+        return reader.readInteger() == SnmpConstants.version3;
+    }
+
+    /**
+     * Returns the length of the complete TLV starting at {@code offset}.
+     */
+    public static int encodedLength(byte[] message, int offset) throws IOException {
+        Reader reader = new Reader(message);
+        reader.position = offset;
+        return reader.skip() - offset;
+    }
+
+    /**
+     * Returns a key over the content octets of the TLV starting at {@code offset}, sharing the message array.
+     */
+    public static CorrelationKey valueKey(byte[] message, int offset) throws IOException {
+        Reader reader = new Reader(message);
+        reader.position = offset;
+        reader.enter();
+        int contentOffset = reader.position;
+        return CorrelationKey.wrap(message, contentOffset, encodedLength(message, offset) - (contentOffset - offset));
+    }
+
+    /**
+     * Decodes a community based SNMP message, returns {@code null} for SNMPv3 messages.
+     */
+    public static PDU decodePdu(byte[] datagram) throws IOException {
+        BERInputStream in = new BERInputStream(ByteBuffer.wrap(datagram));
+        BER.MutableByte type = new BER.MutableByte();
+        BER.decodeHeader(in, type);
+        int version = BER.decodeInteger(in, type);
+        if (version == SnmpConstants.version3) {
+            return null;
+        }
+        BER.decodeString(in, type);
+        PDU pdu = version == SnmpConstants.version1 ? new PDUv1() : new PDU();
+        pdu.decodeBER(in);
+        return pdu;
+    }
+
+    private static class Reader {
+
+        private final byte[] data;
+        private int position;
+
+        private Reader(byte[] data) {
+            this.data = data;
+        }
+
+        private int peekType() throws IOException {
+            checkAvailable(1);
+            return data[position] & 0xFF;
+        }
+
+        private int enter(byte expectedType) throws IOException {
+            int type = peekType();
+            if (type != (expectedType & 0xFF)) {
+                throw new IOException("Unexpected BER type " + type + " at " + position);
+            }
+            return enter();
+        }
+
+        private int enter() throws IOException {
+            checkAvailable(1);
+            position++;
+            int length = readLength();
+            int end = position + length;
+            if (end > data.length) {
+                throw new IOException("BER length " + length + " exceeds message at " + position);
+            }
+            return end;
+        }
+
+        private int skip() throws IOException {
+            checkAvailable(1);
+            position++;
+            int length = readLength();
+            position += length;
+            if (position > data.length) {
+                throw new IOException("BER length " + length + " exceeds message");
+            }
+            return position;
+        }
+
+        private int readInteger() throws IOException {
+            checkAvailable(1);
+            if (data[position] != BER.INTEGER) {
+                throw new IOException("Expected INTEGER at " + position);
+            }
+            position++;
+            int length = readLength();
+            checkAvailable(length);
+            int value = data[position];
+            for (int i = 1; i < length; i++) {
+                value = (value << 8) | (data[position + i] & 0xFF);
+            }
+            position += length;
+            return value;
+        }
+
+        private boolean matches(byte[] encoded) {
+            if (position + encoded.length > data.length) {
+                return false;
+            }
+            for (int i = 0; i < encoded.length; i++) {
+                if (data[position + i] != encoded[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int readLength() throws IOException {
+            checkAvailable(1);
+            int first = data[position++] & 0xFF;
+            if (first < 0x80) {
+                return first;
+            }
+            int bytes = first & 0x7F;
+            if (bytes == 0 || bytes > 4) {
+                throw new IOException("Unsupported BER length at " + position);
+            }
+            checkAvailable(bytes);
+            int length = 0;
+            for (int i = 0; i < bytes; i++) {
+                length = (length << 8) | (data[position++] & 0xFF);
+            }
+            if (length < 0) {
+                throw new IOException("Negative BER length at " + position);
+            }
+            return length;
+        }
+
+        private void checkAvailable(int bytes) throws IOException {
+            if (position + bytes > data.length) {
+                throw new IOException("Truncated BER message at " + position);
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package pl.jakubchmura.jmeter.snmp.sampler.snmp;
+
+import org.snmp4j.asn1.BER;
+import org.snmp4j.asn1.BEROutputStream;
+import org.snmp4j.smi.OctetString;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Encodes community based notifications without going through the snmp4j message dispatcher. The message header
+ * and the constant variable bindings are encoded once, for each message only the request ID, the dynamic variable
+ * bindings and the enclosing lengths are written.
+ */
+public class TrapEncoder {
+
+    public static final int MAX_MESSAGE_SIZE = 65535;
+
+    private static final byte[] ERROR_FIELDS = {BER.INTEGER, 1, 0, BER.INTEGER, 1, 0};
+
+    private final TrapTemplate template;
+    private final byte[] messagePrefix;
+    private final byte[][] constantBindings;
+    private final int constantLength;
+    private final int[] dynamicEnds;
+
+    private final ByteBuffer dynamicBuffer = ByteBuffer.allocate(MAX_MESSAGE_SIZE);
+    private final BEROutputStream dynamicStream = new BEROutputStream(dynamicBuffer);
+    private final ByteBuffer requestIdBuffer = ByteBuffer.allocate(6);
+    private final BEROutputStream requestIdStream = new BEROutputStream(requestIdBuffer);
+    private final BEROutputStream outStream = new BEROutputStream();
+
+    private int requestId = ThreadLocalRandom.current().nextInt(1, Integer.MAX_VALUE);
+
+    public TrapEncoder(TrapTemplate template, int version, OctetString community) throws IOException {
+        this.template = template;
+
+        ByteArrayOutputStream prefix = new ByteArrayOutputStream();
+        BER.encodeInteger(prefix, BER.INTEGER, version);
+        community.encodeBER(prefix);
+        this.messagePrefix = prefix.toByteArray();
+
+        int size = template.size();
+        this.constantBindings = new byte[size][];
+        this.dynamicEnds = new int[size];
+        int length = 0;
+        for (int i = 0; i < size; i++) {
+            if (template.isConstant(i)) {
+                ByteArrayOutputStream binding = new ByteArrayOutputStream();
+                template.getBinding(i).encodeBER(binding);
+                constantBindings[i] = binding.toByteArray();
+                length += constantBindings[i].length;
+            }
+        }
+        this.constantLength = length;
+    }
+
+    public static ByteBuffer allocateBuffer() {
+        return allocateBuffer(1);
+    }
+
+    public static ByteBuffer allocateBuffer(int messages) {
+        return ByteBuffer.allocateDirect(messages * MAX_MESSAGE_SIZE);
+    }
+
+    /**
+     * Appends the next message to {@code out} and returns its length.
+     */
+    public int encode(ByteBuffer out) throws IOException {
+        dynamicBuffer.clear();
+        for (int i = 0; i < constantBindings.length; i++) {
+            if (constantBindings[i] == null) {
+                template.getBinding(i).encodeBER(dynamicStream);
+                dynamicEnds[i] = dynamicBuffer.position();
+            }
+        }
+
+        requestIdBuffer.clear();
+        BER.encodeInteger(requestIdStream, BER.INTEGER, nextRequestId());
+        int requestIdLength = requestIdBuffer.position();
+
+        int bindingsLength = constantLength + dynamicBuffer.position();
+        int pduLength = requestIdLength + ERROR_FIELDS.length + headerLength(bindingsLength) + bindingsLength;
+        int messageLength = messagePrefix.length + headerLength(pduLength) + pduLength;
+
+        int start = out.position();
+        outStream.setBuffer(out);
+        BER.encodeHeader(outStream, BER.SEQUENCE, messageLength);
+        out.put(messagePrefix);
+        BER.encodeHeader(outStream, template.getPduType(), pduLength);
+        out.put(requestIdBuffer.array(), 0, requestIdLength);
+        out.put(ERROR_FIELDS);
+        BER.encodeHeader(outStream, BER.SEQUENCE, bindingsLength);
+        int dynamicStart = 0;
+        for (int i = 0; i < constantBindings.length; i++) {
+            byte[] constant = constantBindings[i];
+            if (constant != null) {
+                out.put(constant);
+            } else {
+                out.put(dynamicBuffer.array(), dynamicStart, dynamicEnds[i] - dynamicStart);
+                dynamicStart = dynamicEnds[i];
+            }
+        }
+        return out.position() - start;
+    }
+
+    private int nextRequestId() {
+        requestId = requestId == Integer.MAX_VALUE ? 1 : requestId + 1;
+        return requestId;
+    }
+
+    private static int headerLength(int length) {
+        return 1 + BER.getBERLengthOfLength(length);
+    }
+}
@@ -0,0 +1,184 @@
+package pl.jakubchmura.jmeter.snmp.sampler.snmp;
+
+import org.apache.jmeter.util.JMeterUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Receives datagrams on one or more UDP sockets bound to the same address and hands them to a pool of workers. On
+ * platforms supporting SO_REUSEPORT the kernel spreads incoming datagrams over the sockets.
+ */
+public class TrapListener implements Closeable {
+
+    public static final String SOCKETS_PROPERTY = "snmp.receiver.sockets";
+    public static final String RECEIVE_BUFFER_PROPERTY = "snmp.receiver.receiveBufferSize";
+    public static final String WORKERS_PROPERTY = "snmp.receiver.workers";
+    public static final String QUEUE_SIZE_PROPERTY = "snmp.receiver.queueSize";
+
+    private static final int MAX_DATAGRAM_SIZE = 65535;
+
+    private static final Logger log = LoggerFactory.getLogger(TrapListener.class);
+
+    public interface DatagramHandler {
+        void handle(byte[] datagram, long receivedNanos) throws IOException;
+    }
+
+    private final DatagramHandler handler;
+    private final List<DatagramChannel> channels = new ArrayList<>();
+    private final List<Thread> readers = new ArrayList<>();
+    private final ThreadPoolExecutor workers;
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicBoolean failureReported = new AtomicBoolean();
+    private volatile boolean running = true;
+
+    public TrapListener(InetSocketAddress address, DatagramHandler handler) throws IOException {
+        this.handler = handler;
+        int sockets = Math.max(1, JMeterUtils.getPropDefault(SOCKETS_PROPERTY, 1));
+        int receiveBufferSize = JMeterUtils.getPropDefault(RECEIVE_BUFFER_PROPERTY, 0);
+        int workerCount = JMeterUtils.getPropDefault(WORKERS_PROPERTY, Runtime.getRuntime().availableProcessors());
+        int queueSize = Math.max(1, JMeterUtils.getPropDefault(QUEUE_SIZE_PROPERTY, 100000));
+
+        SocketOption<Boolean> reusePort = null;
+        if (sockets > 1) {
+            reusePort = reusePortOption();
+            if (reusePort == null) {
+                log.warn("SO_REUSEPORT is not supported, listening on a single socket");
+                sockets = 1;
+            }
+        }
+
+        try {
+            for (int i = 0; i < sockets; i++) {
+                DatagramChannel channel = DatagramChannel.open();
+                channels.add(channel);
+                if (reusePort != null) {
+                    channel.setOption(reusePort, true);
+                }
+                if (receiveBufferSize > 0) {
+                    channel.setOption(StandardSocketOptions.SO_RCVBUF, receiveBufferSize);
+                }
+                channel.bind(address);
+            }
+        } catch (IOException e) {
+            closeChannels();
+            throw e;
+        }
+
+        if (workerCount > 0) {
+            AtomicInteger workerNumber = new AtomicInteger();
+            this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueSize), r -> {
+                        Thread thread = new Thread(r, "SNMP receiver worker " + address + "-" + workerNumber.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        } else {
+            this.workers = null;
+        }
+
+        for (int i = 0; i < channels.size(); i++) {
+            DatagramChannel channel = channels.get(i);
+            Thread reader = new Thread(() -> read(channel), "SNMP receiver " + address + "-" + (i + 1));
+            reader.setDaemon(true);
+            readers.add(reader);
+            reader.start();
+        }
+        log.info("Listening on " + address + " with " + channels.size() + " sockets and " + workerCount + " workers");
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public int getQueueDepth() {
+        return workers == null ? 0 : workers.getQueue().size();
+    }
+
+    private void read(DatagramChannel channel) {
+        ByteBuffer buffer = ByteBuffer.allocate(MAX_DATAGRAM_SIZE);
+        while (running) {
+            try {
+                buffer.clear();
+                channel.receive(buffer);
+                long received = System.nanoTime();
+                byte[] datagram = Arrays.copyOf(buffer.array(), buffer.position());
+                if (workers == null) {
+                    handle(datagram, received);
+                } else {
+                    try {
+                        workers.execute(() -> handle(datagram, received));
+                    } catch (RejectedExecutionException e) {
+                        dropped.incrementAndGet();
+                    }
+                }
+            } catch (ClosedChannelException e) {
+                break;
+            } catch (IOException e) {
+                log.warn("Receive trap", e);
+            }
+        }
+    }
+
+    private void handle(byte[] datagram, long received) {
+        try {
+            handler.handle(datagram, received);
+        } catch (Exception e) {
+            // a flood of foreign datagrams must not turn into log output, so only the first failure is logged
+            SnmpMetrics.getInstance().decodeFailure();
+            if (failureReported.compareAndSet(false, true)) {
+                log.warn("Process trap, further failures are only counted in the metrics", e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        closeChannels();
+        if (workers != null) {
+            workers.shutdown();
+        }
+    }
+
+    private void closeChannels() {
+        for (DatagramChannel channel : channels) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Close SNMP listener", e);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static SocketOption<Boolean> reusePortOption() throws IOException {
+        try (DatagramChannel channel = DatagramChannel.open()) {
+            for (SocketOption<?> option : channel.supportedOptions()) {
+                if ("SO_REUSEPORT".equals(option.name())) {
+                    return (SocketOption<Boolean>) option;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,234 @@
+package pl.jakubchmura.jmeter.snmp.sampler.snmp;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.jakubchmura.jmeter.snmp.sampler.util.DelayDistribution;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stand-in for a system under test answering each trap with a return trap. Every trap received is sent back
+ * unchanged, so it still carries the correlation OID, to the address samplers listen on for return traps. Replies
+ * are delayed by a configurable distribution and a share of the traps is dropped. With several return addresses the
+ * replies take turns, like a system under test spreading its traps over the nodes of a distributed test.
+ * <p>
+ * One thread runs a non-blocking loop which receives traps and sends the replies that are due. Traps without delay
+ * are sent back from the receive buffer, delayed ones are copied and kept in a queue ordered by their due time.
+ */
+public class TrapResponder implements Closeable {
+
+    private static final int MAX_DATAGRAM_SIZE = 65535;
+    // shorter waits are spun, the selector cannot wait for less than a millisecond
+    private static final long SPIN_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final Logger log = LoggerFactory.getLogger(TrapResponder.class);
+
+    private final InetSocketAddress[] returnAddresses;
+    private final DelayDistribution distribution;
+    private final long delayNanos;
+    private final long jitterNanos;
+    private final double dropRate;
+    private final DatagramChannel channel;
+    private final Selector selector;
+    private final Thread loop;
+    private final PriorityQueue<Reply> replies = new PriorityQueue<>();
+    private final Random random = new Random();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong returned = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean running = true;
+    private long sequence;
+    private int nextReturn;
+
+    /**
+     * @param dropRate share of traps not answered, from 0 to 1
+     */
+    public TrapResponder(InetSocketAddress address, InetSocketAddress[] returnAddresses,
+                         DelayDistribution distribution, long delayMillis, long jitterMillis, double dropRate)
+            throws IOException {
+        this.returnAddresses = returnAddresses.clone();
+        this.distribution = distribution;
+        this.delayNanos = TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        this.jitterNanos = TimeUnit.MILLISECONDS.toNanos(jitterMillis);
+        this.dropRate = dropRate;
+        this.channel = DatagramChannel.open();
+        try {
+            channel.bind(address);
+            channel.configureBlocking(false);
+            this.selector = Selector.open();
+            channel.register(selector, SelectionKey.OP_READ);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        this.loop = new Thread(this::run, "SNMP trap responder " + address);
+        loop.setDaemon(true);
+        loop.start();
+        log.info("Responding to traps on " + address + " with return traps to " + Arrays.toString(returnAddresses)
+                + ", " + distribution.getName() + " delay " + delayMillis + " ms, jitter " + jitterMillis
+                + " ms, drop rate " + dropRate);
+    }
+
+    public long getReceived() {
+        return received.get();
+    }
+
+    public long getReturned() {
+        return returned.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    private void run() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(MAX_DATAGRAM_SIZE);
+        while (running) {
+            try {
+                long wait = sendDueReplies();
+                if (wait < 0) {
+                    selector.select();
+                } else if (wait > SPIN_NANOS) {
+                    selector.select(TimeUnit.NANOSECONDS.toMillis(wait - SPIN_NANOS) + 1);
+                } else {
+                    selector.selectNow();
+                }
+                selector.selectedKeys().clear();
+                receive(buffer);
+            } catch (ClosedChannelException | ClosedSelectorException e) {
+                break;
+            } catch (IOException e) {
+                log.warn("Respond to trap", e);
+            }
+        }
+    }
+
+    private void receive(ByteBuffer buffer) throws IOException {
+        while (true) {
+            buffer.clear();
+            if (channel.receive(buffer) == null) {
+                return;
+            }
+            received.incrementAndGet();
+            if (dropRate > 0 && random.nextDouble() < dropRate) {
+                dropped.incrementAndGet();
+                continue;
+            }
+            buffer.flip();
+            InetSocketAddress returnAddress = returnAddresses[nextReturn];
+            nextReturn = nextReturn + 1 == returnAddresses.length ? 0 : nextReturn + 1;
+            long delay = distribution.next(random, delayNanos, jitterNanos);
+            if (delay > 0 || !replies.isEmpty() || channel.send(buffer, returnAddress) == 0) {
+                byte[] message = new byte[buffer.remaining()];
+                buffer.get(message);
+                replies.add(new Reply(System.nanoTime() + delay, sequence++, message, returnAddress));
+            } else {
+                returned.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Sends the replies which are due and returns the nanoseconds until the next one, or -1 if there is none.
+     */
+    private long sendDueReplies() throws IOException {
+        Reply reply;
+        while ((reply = replies.peek()) != null) {
+            long wait = reply.due - System.nanoTime();
+            if (wait > 0) {
+                return wait;
+            }
+            if (channel.send(ByteBuffer.wrap(reply.message), reply.returnAddress) == 0) {
+                // send buffer full, retry on the next turn of the loop
+                return 0;
+            }
+            replies.poll();
+            returned.incrementAndGet();
+        }
+        return -1;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            selector.close();
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Close trap responder", e);
+        }
+        log.info("Trap responder received " + received + " traps, returned " + returned + ", dropped " + dropped);
+    }
+
+    /**
+     * Runs a responder outside of JMeter: {@code listenHost:port returnHost:port[,returnHost:port...] [distribution
+     * delayMs jitterMs dropPercent]}.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2 && args.length != 6) {
+            log.error("Usage: " + TrapResponder.class.getName()
+                    + " listenHost:port returnHost:port[,returnHost:port...] [" + String.join("|", DelayDistribution.getNames())
+                    + " delayMs jitterMs dropPercent]");
+            System.exit(1);
+        }
+        DelayDistribution distribution = args.length > 2
+                ? DelayDistribution.fromName(args[2])
+                : DelayDistribution.Constant;
+        long delay = args.length > 2 ? Long.parseLong(args[3]) : 0;
+        long jitter = args.length > 2 ? Long.parseLong(args[4]) : 0;
+        double dropRate = args.length > 2 ? Double.parseDouble(args[5]) / 100 : 0;
+        InetSocketAddress[] returnAddresses = Arrays.stream(args[1].split(","))
+                .map(TrapResponder::parseAddress)
+                .toArray(InetSocketAddress[]::new);
+        try (TrapResponder responder = new TrapResponder(parseAddress(args[0]), returnAddresses, distribution,
+                delay, jitter, dropRate)) {
+            long lastReceived = 0;
+            while (true) {
+                Thread.sleep(10000);
+                long receivedNow = responder.getReceived();
+                log.info((receivedNow - lastReceived) / 10 + " traps/s, received " + receivedNow
+                        + ", returned " + responder.getReturned() + ", dropped " + responder.getDropped());
+                lastReceived = receivedNow;
+            }
+        }
+    }
+
+    private static InetSocketAddress parseAddress(String address) {
+        int colon = address.lastIndexOf(':');
+        return new InetSocketAddress(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+    }
+
+    private static class Reply implements Comparable<Reply> {
+
+        private final long due;
+        private final long sequence;
+        private final byte[] message;
+        private final InetSocketAddress returnAddress;
+
+        private Reply(long due, long sequence, byte[] message, InetSocketAddress returnAddress) {
+            this.due = due;
+            this.sequence = sequence;
+            this.message = message;
+            this.returnAddress = returnAddress;
+        }
+
+        @Override
+        public int compareTo(Reply other) {
+            int byDue = Long.compare(due - other.due, 0);
+            return byDue != 0 ? byDue : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package pl.jakubchmura.jmeter.snmp.sampler.snmp;
+
+import org.snmp4j.PDU;
+import org.snmp4j.ScopedPDU;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.OctetString;
+import org.snmp4j.smi.VariableBinding;
+import pl.jakubchmura.jmeter.snmp.sampler.util.SimpleVariableBinding;
+import pl.jakubchmura.jmeter.snmp.sampler.util.SnmpVariableType;
+
+import java.util.List;
+
+/**
+ * Variable bindings of a notification compiled once per thread. Constant bindings are parsed up front and shared
+ * by every PDU, only bindings containing JMeter functions or variables are evaluated for each PDU. A binding can be
+ * given its values by a {@link CorrelationIdGenerator} instead, skipping JMeter functions altogether.
+ */
+public class TrapTemplate {
+
+    private final int pduType;
+    private final boolean scoped;
+    private final VariableBinding[] constants;
+    private final DynamicBinding[] dynamics;
+    private final int generatedIndex;
+    private final OID generatedOid;
+    private final CorrelationIdGenerator generator;
+
+    private TrapTemplate(int pduType, boolean scoped, VariableBinding[] constants, DynamicBinding[] dynamics,
+                         int generatedIndex, OID generatedOid, CorrelationIdGenerator generator) {
+        this.pduType = pduType;
+        this.scoped = scoped;
+        this.constants = constants;
+        this.dynamics = dynamics;
+        this.generatedIndex = generatedIndex;
+        this.generatedOid = generatedOid;
+        this.generator = generator;
+    }
+
+    /**
+     * @param scoped whether to create SNMPv3 scoped PDUs
+     */
+    public static TrapTemplate compile(int pduType, boolean scoped, List<SimpleVariableBinding> bindings) {
+        return compile(pduType, scoped, bindings, null, null);
+    }
+
+    /**
+     * Like {@link #compile(int, boolean, List)}, with the OctetString values of {@code generatedOid} taken from the
+     * generator. The binding is appended if none of the bindings has that OID.
+     */
+    public static TrapTemplate compile(int pduType, boolean scoped, List<SimpleVariableBinding> bindings,
+                                       OID generatedOid, CorrelationIdGenerator generator) {
+        int generatedIndex = -1;
+        if (generator != null) {
+            generatedIndex = bindings.size();
+            for (int i = 0; i < bindings.size(); i++) {
+                SimpleVariableBinding simple = bindings.get(i);
+                if (!simple.isOidDynamic() && generatedOid.equals(new OID(simple.getOid()))) {
+                    generatedIndex = i;
+                    break;
+                }
+            }
+        }
+        boolean valuesIgnored = pduType == PDU.GET || pduType == PDU.GETNEXT || pduType == PDU.GETBULK;
+        int size = bindings.size();
+        VariableBinding[] constants = new VariableBinding[Math.max(size, generatedIndex + 1)];
+        DynamicBinding[] dynamics = new DynamicBinding[constants.length];
+        for (int i = 0; i < size; i++) {
+            SimpleVariableBinding simple = bindings.get(i);
+            if (i == generatedIndex) {
+                continue;
+            }
+            if (valuesIgnored ? simple.isOidDynamic() : simple.isDynamic()) {
+                dynamics[i] = new DynamicBinding(simple, valuesIgnored);
+            } else if (valuesIgnored) {
+                constants[i] = new VariableBinding(new OID(simple.getOid()));
+            } else {
+                constants[i] = simple.toVariableBinding();
+            }
+        }
+        return new TrapTemplate(pduType, scoped, constants, dynamics, generatedIndex, generatedOid, generator);
+    }
+
+    public int getPduType() {
+        return pduType;
+    }
+
+    public int size() {
+        return constants.length;
+    }
+
+    public boolean isConstant(int index) {
+        return constants[index] != null;
+    }
+
+    public VariableBinding getBinding(int index) {
+        VariableBinding constant = constants[index];
+        if (constant != null) {
+            return constant;
+        }
+        if (index == generatedIndex) {
+            // a new array per PDU: it is the correlation key of the sample until its return trap arrives
+            OctetString value = new OctetString();
+            value.setValue(generator.next());
+            return new VariableBinding(generatedOid, value);
+        }
+        return dynamics[index].evaluate();
+    }
+
+    public PDU createPdu() {
+        PDU pdu = scoped ? new ScopedPDU() : new PDU();
+        pdu.setType(pduType);
+        for (int i = 0; i < constants.length; i++) {
+            pdu.add(getBinding(i));
+        }
+        return pdu;
+    }
+
+    private static class DynamicBinding {
+
+        private final SimpleVariableBinding source;
+        private final SnmpVariableType type;
+        private final OID oid;
+
+        private DynamicBinding(SimpleVariableBinding source, boolean valueIgnored) {
+            this.source = source;
+            this.type = valueIgnored ? null : source.getType();
+            this.oid = source.isOidDynamic() ? null : new OID(source.getOid());
+        }
+
+        private VariableBinding evaluate() {
+            OID evaluatedOid = oid != null ? oid : new OID(source.evaluateOid());
+            if (type == null) {
+                return new VariableBinding(evaluatedOid);
+            }
+            return new VariableBinding(evaluatedOid, type.createVariable(source.evaluateValue()));
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package pl.jakubchmura.jmeter.snmp.sampler.snmp;
+
+import org.apache.jmeter.util.JMeterUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.snmp4j.Snmp;
+import org.snmp4j.mp.MPv3;
+import org.snmp4j.security.AuthHMAC128SHA224;
+import org.snmp4j.security.AuthHMAC192SHA256;
+import org.snmp4j.security.AuthHMAC256SHA384;
+import org.snmp4j.security.AuthHMAC384SHA512;
+import org.snmp4j.security.PrivAES192;
+import org.snmp4j.security.PrivAES256;
+import org.snmp4j.security.SecurityModels;
+import org.snmp4j.security.SecurityProtocols;
+import org.snmp4j.security.USM;
+import org.snmp4j.security.UsmUser;
+import org.snmp4j.smi.Address;
+import org.snmp4j.smi.OctetString;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * The user-based security model shared by all samplers. Keys are localized once per user and engine ID and
+ * authoritative engine IDs are discovered once per target address, so sending a message costs only the HMAC and
+ * the cipher. The USM holds one user per security name and engine ID, so all samplers using a security name with
+ * an engine have to use the same credentials.
+ */
+public class UsmSecurity {
+
+    public static final String LOCAL_ENGINE_ID_PROPERTY = "snmp.v3.localEngineId";
+
+    private static final Logger log = LoggerFactory.getLogger(UsmSecurity.class);
+
+    private static final USM usm;
+    private static final ConcurrentHashMap<List<OctetString>, Credentials> users = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<Address, CompletableFuture<OctetString>> engineIds =
+            new ConcurrentHashMap<>();
+
+    static {
+        SecurityProtocols protocols = SecurityProtocols.getInstance().addDefaultProtocols();
+        protocols.addAuthenticationProtocol(new AuthHMAC128SHA224());
+        protocols.addAuthenticationProtocol(new AuthHMAC192SHA256());
+        protocols.addAuthenticationProtocol(new AuthHMAC256SHA384());
+        protocols.addAuthenticationProtocol(new AuthHMAC384SHA512());
+        protocols.addPrivacyProtocol(new PrivAES192());
+        protocols.addPrivacyProtocol(new PrivAES256());
+        String localEngineId = JMeterUtils.getPropDefault(LOCAL_ENGINE_ID_PROPERTY, "");
+        byte[] engineId = localEngineId.isEmpty()
+                ? MPv3.createLocalEngineID()
+                : OctetString.fromHexString(localEngineId).getValue();
+        usm = new USM(protocols, new OctetString(engineId), 0);
+        SecurityModels.getInstance().addSecurityModel(usm);
+    }
+
+    private UsmSecurity() {
+    }
+
+    public static OctetString getLocalEngineId() {
+        return usm.getLocalEngineID();
+    }
+
+    /**
+     * Makes the session authoritative with the shared local engine ID, which is the engine ID of sent traps.
+     */
+    public static void register(Snmp snmp) {
+        MPv3 mpv3 = (MPv3) snmp.getMessageProcessingModel(MPv3.ID);
+        mpv3.setLocalEngineID(usm.getLocalEngineID().getValue());
+    }
+
+    /**
+     * Adds the user with keys localized for the engine ID unless the same user is already known for it.
+     *
+     * @throws IllegalStateException if the security name is known for the engine ID with other credentials
+     */
+    public static void addUser(UsmUser user, OctetString engineId) {
+        Credentials credentials = new Credentials(user);
+        Credentials known = users.computeIfAbsent(Arrays.asList(engineId, user.getSecurityName()), key -> {
+            log.info("Localizing keys of user " + user.getSecurityName() + " for engine ID " + engineId.toHexString());
+            usm.addUser(user.getSecurityName(), engineId, user);
+            return credentials;
+        });
+        if (!known.equals(credentials)) {
+            throw new IllegalStateException("User " + user.getSecurityName() + " is already used with other"
+                    + " credentials for engine ID " + engineId.toHexString());
+        }
+    }
+
+    /**
+     * Returns the authoritative engine ID of the target, discovering it on first use and making it known to the
+     * session. Threads asking for the engine ID of a target while it is discovered wait for that discovery; a failed
+     * discovery is not remembered.
+     */
+    public static OctetString getEngineId(Snmp snmp, Address address, long timeout) throws IOException {
+        CompletableFuture<OctetString> engineId = engineIds.get(address);
+        if (engineId == null) {
+            CompletableFuture<OctetString> discovery = new CompletableFuture<>();
+            engineId = engineIds.putIfAbsent(address, discovery);
+            if (engineId == null) {
+                engineId = discovery;
+                discover(snmp, address, timeout, discovery);
+            }
+        }
+        OctetString discovered;
+        try {
+            discovered = engineId.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for engine ID discovery of " + address, e);
+        } catch (ExecutionException e) {
+            throw new IOException("Engine ID discovery of " + address + " failed", e.getCause());
+        }
+        MPv3 mpv3 = (MPv3) snmp.getMessageProcessingModel(MPv3.ID);
+        mpv3.addEngineID(address, discovered);
+        return discovered;
+    }
+
+    private static void discover(Snmp snmp, Address address, long timeout, CompletableFuture<OctetString> discovery) {
+        try {
+            byte[] discovered = snmp.discoverAuthoritativeEngineID(address, timeout);
+            if (discovered == null) {
+                throw new IOException("No response from " + address);
+            }
+            OctetString engineId = new OctetString(discovered);
+            log.info("Discovered engine ID " + engineId.toHexString() + " of " + address);
+            discovery.complete(engineId);
+        } catch (IOException | RuntimeException e) {
+            engineIds.remove(address, discovery);
+            discovery.completeExceptionally(e);
+        }
+    }
+
+    private static class Credentials {
+
+        private final String protocols;
+        private final OctetString authPassphrase;
+        private final OctetString privPassphrase;
+
+        private Credentials(UsmUser user) {
+            this.protocols = user.getAuthenticationProtocol() + "/" + user.getPrivacyProtocol();
+            this.authPassphrase = user.getAuthenticationPassphrase();
+            this.privPassphrase = user.getPrivacyPassphrase();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Credentials)) {
+                return false;
+            }
+            Credentials other = (Credentials) o;
+            return protocols.equals(other.protocols)
+                    && Objects.equals(authPassphrase, other.authPassphrase)
+                    && Objects.equals(privPassphrase, other.privPassphrase);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(protocols, authPassphrase, privPassphrase);
+        }
+    }
+}
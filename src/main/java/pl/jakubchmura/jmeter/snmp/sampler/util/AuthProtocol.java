@@ -0,0 +1,54 @@
+package pl.jakubchmura.jmeter.snmp.sampler.util;
+
+import org.snmp4j.security.AuthHMAC128SHA224;
+import org.snmp4j.security.AuthHMAC192SHA256;
+import org.snmp4j.security.AuthHMAC256SHA384;
+import org.snmp4j.security.AuthHMAC384SHA512;
+import org.snmp4j.security.AuthMD5;
+import org.snmp4j.security.AuthSHA;
+import org.snmp4j.smi.OID;
+
+public enum AuthProtocol {
+
+    None("None", null),
+    MD5("MD5", AuthMD5.ID),
+    SHA("SHA", AuthSHA.ID),
+    SHA224("SHA-224", AuthHMAC128SHA224.ID),
+    SHA256("SHA-256", AuthHMAC192SHA256.ID),
+    SHA384("SHA-384", AuthHMAC256SHA384.ID),
+    SHA512("SHA-512", AuthHMAC384SHA512.ID);
+
+    private final String name;
+    private final OID id;
+
+    AuthProtocol(String name, OID id) {
+        this.name = name;
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public OID getId() {
+        return id;
+    }
+
+    public static String[] getNames() {
+        AuthProtocol[] values = AuthProtocol.values();
+        String[] names = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            names[i] = values[i].getName();
+        }
+        return names;
+    }
+
+    public static AuthProtocol fromName(String name) {
+        for (AuthProtocol value : values()) {
+            if (value.getName().equals(name)) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Unknown authentication protocol: " + name);
+    }
+}
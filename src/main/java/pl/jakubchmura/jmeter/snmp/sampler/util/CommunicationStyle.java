@@ -1,20 +1,44 @@
 package pl.jakubchmura.jmeter.snmp.sampler.util;
 
+import org.snmp4j.PDU;
+
 public enum CommunicationStyle {
 
-    RequestOnly("Request Only"),
-    RequestResponse("Request Response");
+    RequestOnly("Request Only", PDU.NOTIFICATION, false),
+    RequestResponse("Request Response", PDU.NOTIFICATION, false),
+    Get("Get", PDU.GET, true),
+    GetNext("Get Next", PDU.GETNEXT, true),
+    GetBulk("Get Bulk", PDU.GETBULK, true),
+    Set("Set", PDU.SET, true),
+    Walk("Walk", PDU.GETBULK, true),
+    Inform("Inform", PDU.INFORM, true),
+    Replay("Replay", PDU.NOTIFICATION, false);
 
     private final String name;
+    private final int pduType;
+    private final boolean confirmed;
 
-    CommunicationStyle(String name) {
+    CommunicationStyle(String name, int pduType, boolean confirmed) {
         this.name = name;
+        this.pduType = pduType;
+        this.confirmed = confirmed;
     }
 
     public String getName() {
         return name;
     }
 
+    public int getPduType() {
+        return pduType;
+    }
+
+    /**
+     * Whether the PDU is answered by the receiving entity with a response PDU.
+     */
+    public boolean isConfirmed() {
+        return confirmed;
+    }
+
     public static String[] getNames() {
         CommunicationStyle[] values = CommunicationStyle.values();
         String[] names = new String[values.length];
@@ -0,0 +1,69 @@
+package pl.jakubchmura.jmeter.snmp.sampler.util;
+
+import java.util.Random;
+
+public enum DelayDistribution {
+
+    Constant("Constant") {
+        @Override
+        public long next(Random random, long delay, long jitter) {
+            return delay;
+        }
+    },
+    Uniform("Uniform") {
+        @Override
+        public long next(Random random, long delay, long jitter) {
+            if (jitter <= 0) {
+                return delay;
+            }
+            return Math.max(0, delay - jitter + (long) (random.nextDouble() * 2 * jitter));
+        }
+    },
+    Normal("Normal") {
+        @Override
+        public long next(Random random, long delay, long jitter) {
+            return Math.max(0, delay + (long) (random.nextGaussian() * jitter));
+        }
+    },
+    Exponential("Exponential") {
+        @Override
+        public long next(Random random, long delay, long jitter) {
+            return jitter + (long) (-Math.log(1 - random.nextDouble()) * delay);
+        }
+    };
+
+    private final String name;
+
+    DelayDistribution(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @param delay  mean delay, for {@link #Exponential} the mean added to the jitter
+     * @param jitter half the width of {@link #Uniform}, the standard deviation of {@link #Normal} and the minimum
+     *               delay of {@link #Exponential}
+     */
+    public abstract long next(Random random, long delay, long jitter);
+
+    public static String[] getNames() {
+        DelayDistribution[] values = DelayDistribution.values();
+        String[] names = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            names[i] = values[i].getName();
+        }
+        return names;
+    }
+
+    public static DelayDistribution fromName(String name) {
+        for (DelayDistribution distribution : values()) {
+            if (distribution.getName().equals(name)) {
+                return distribution;
+            }
+        }
+        throw new IllegalArgumentException("Unknown delay distribution: " + name);
+    }
+}
@@ -0,0 +1,52 @@
+package pl.jakubchmura.jmeter.snmp.sampler.util;
+
+import org.snmp4j.security.Priv3DES;
+import org.snmp4j.security.PrivAES128;
+import org.snmp4j.security.PrivAES192;
+import org.snmp4j.security.PrivAES256;
+import org.snmp4j.security.PrivDES;
+import org.snmp4j.smi.OID;
+
+public enum PrivProtocol {
+
+    None("None", null),
+    DES("DES", PrivDES.ID),
+    TripleDES("3DES", Priv3DES.ID),
+    AES128("AES-128", PrivAES128.ID),
+    AES192("AES-192", PrivAES192.ID),
+    AES256("AES-256", PrivAES256.ID);
+
+    private final String name;
+    private final OID id;
+
+    PrivProtocol(String name, OID id) {
+        this.name = name;
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public OID getId() {
+        return id;
+    }
+
+    public static String[] getNames() {
+        PrivProtocol[] values = PrivProtocol.values();
+        String[] names = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            names[i] = values[i].getName();
+        }
+        return names;
+    }
+
+    public static PrivProtocol fromName(String name) {
+        for (PrivProtocol value : values()) {
+            if (value.getName().equals(name)) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Unknown privacy protocol: " + name);
+    }
+}
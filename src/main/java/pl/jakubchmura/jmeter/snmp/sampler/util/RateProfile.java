@@ -0,0 +1,36 @@
+package pl.jakubchmura.jmeter.snmp.sampler.util;
+
+public enum RateProfile {
+
+    Constant("Constant"),
+    Ramp("Ramp"),
+    Step("Step");
+
+    private final String name;
+
+    RateProfile(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public static String[] getNames() {
+        RateProfile[] values = RateProfile.values();
+        String[] names = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            names[i] = values[i].getName();
+        }
+        return names;
+    }
+
+    public static RateProfile fromName(String name) {
+        for (RateProfile rateProfile : values()) {
+            if (rateProfile.getName().equals(name)) {
+                return rateProfile;
+            }
+        }
+        throw new IllegalArgumentException("Unknown rate profile: " + name);
+    }
+}
@@ -0,0 +1,153 @@
+package pl.jakubchmura.jmeter.snmp.sampler.util;
+
+/**
+ * Send times of an open workload. The n-th event (starting at 0) is due {@link #timeOf(long)} nanoseconds after the
+ * start of the schedule.
+ */
+public abstract class RateSchedule {
+
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    public abstract double rateAt(double seconds);
+
+    public abstract double eventsUntil(double seconds);
+
+    protected abstract double secondsOf(long event);
+
+    public long timeOf(long event) {
+        return (long) (secondsOf(event) * NANOS_PER_SECOND);
+    }
+
+    public static RateSchedule constant(double rate) {
+        checkRate(rate);
+        if (rate <= 0) {
+            throw new IllegalArgumentException("Rate must be positive");
+        }
+        return new Piecewise(new double[]{rate}, Double.POSITIVE_INFINITY);
+    }
+
+    public static RateSchedule step(double startRate, double stepRate, double stepSeconds, int steps) {
+        int count = Math.max(1, steps);
+        if (count > 1 && stepSeconds <= 0) {
+            throw new IllegalArgumentException("Step time must be positive");
+        }
+        double[] rates = new double[count];
+        for (int i = 0; i < count; i++) {
+            rates[i] = startRate + i * stepRate;
+            checkRate(rates[i]);
+        }
+        if (rates[count - 1] <= 0) {
+            throw new IllegalArgumentException("The last step must have a positive rate");
+        }
+        return new Piecewise(rates, stepSeconds);
+    }
+
+    public static RateSchedule ramp(double startRate, double targetRate, double rampSeconds) {
+        checkRate(startRate);
+        checkRate(targetRate);
+        if (targetRate <= 0) {
+            throw new IllegalArgumentException("Target rate must be positive");
+        }
+        if (rampSeconds <= 0) {
+            return constant(targetRate);
+        }
+        return new Ramp(startRate, targetRate, rampSeconds);
+    }
+
+    private static void checkRate(double rate) {
+        if (rate < 0 || Double.isNaN(rate) || Double.isInfinite(rate)) {
+            throw new IllegalArgumentException("Invalid rate: " + rate);
+        }
+    }
+
+    private static class Piecewise extends RateSchedule {
+
+        private final double[] rates;
+        private final double stepSeconds;
+
+        private Piecewise(double[] rates, double stepSeconds) {
+            this.rates = rates;
+            this.stepSeconds = stepSeconds;
+        }
+
+        @Override
+        public double rateAt(double seconds) {
+            int step = (int) Math.min(rates.length - 1, Math.max(0, seconds / stepSeconds));
+            return rates[step];
+        }
+
+        @Override
+        public double eventsUntil(double seconds) {
+            double events = 0;
+            for (int i = 0; i < rates.length; i++) {
+                double stepStart = stepStart(i);
+                if (seconds <= stepStart) {
+                    break;
+                }
+                double stepEnd = i == rates.length - 1 ? seconds : Math.min(seconds, stepStart + stepSeconds);
+                events += rates[i] * (stepEnd - stepStart);
+            }
+            return events;
+        }
+
+        @Override
+        protected double secondsOf(long event) {
+            double remaining = event;
+            for (int i = 0; i < rates.length - 1; i++) {
+                double stepEvents = rates[i] * stepSeconds;
+                if (remaining < stepEvents) {
+                    return stepStart(i) + remaining / rates[i];
+                }
+                remaining -= stepEvents;
+            }
+            return stepStart(rates.length - 1) + remaining / rates[rates.length - 1];
+        }
+
+        private double stepStart(int step) {
+            return step == 0 ? 0 : step * stepSeconds;
+        }
+    }
+
+    private static class Ramp extends RateSchedule {
+
+        private final double startRate;
+        private final double targetRate;
+        private final double rampSeconds;
+        private final double acceleration;
+        private final double rampEvents;
+
+        private Ramp(double startRate, double targetRate, double rampSeconds) {
+            this.startRate = startRate;
+            this.targetRate = targetRate;
+            this.rampSeconds = rampSeconds;
+            this.acceleration = (targetRate - startRate) / rampSeconds;
+            this.rampEvents = (startRate + targetRate) * rampSeconds / 2;
+        }
+
+        @Override
+        public double rateAt(double seconds) {
+            return seconds >= rampSeconds ? targetRate : startRate + acceleration * Math.max(0, seconds);
+        }
+
+        @Override
+        public double eventsUntil(double seconds) {
+            if (seconds >= rampSeconds) {
+                return rampEvents + (seconds - rampSeconds) * targetRate;
+            }
+            double t = Math.max(0, seconds);
+            return startRate * t + acceleration * t * t / 2;
+        }
+
+        @Override
+        protected double secondsOf(long event) {
+            if (event >= rampEvents) {
+                return rampSeconds + (event - rampEvents) / targetRate;
+            }
+            if (acceleration == 0) {
+                return event / startRate;
+            }
+            double discriminant = Math.max(0, startRate * startRate + 2 * acceleration * event);
+            return (Math.sqrt(discriminant) - startRate) / acceleration;
+        }
+    }
+}
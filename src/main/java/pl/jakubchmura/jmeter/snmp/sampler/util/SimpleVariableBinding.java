@@ -1,6 +1,12 @@
 package pl.jakubchmura.jmeter.snmp.sampler.util;
 
+import org.apache.jmeter.engine.util.CompoundVariable;
+import org.apache.jmeter.functions.InvalidVariableException;
 import org.apache.jmeter.testelement.AbstractTestElement;
+import org.apache.jmeter.testelement.property.FunctionProperty;
+import org.apache.jmeter.testelement.property.JMeterProperty;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.VariableBinding;
 
 public class SimpleVariableBinding extends AbstractTestElement {
 
@@ -17,6 +23,32 @@ public class SimpleVariableBinding extends AbstractTestElement {
         setType(type);
     }
 
+    /**
+     * Creates a binding whose OID and value are compiled to functions when they reference JMeter functions or
+     * variables, as JMeter does for properties of the test plan when the test starts.
+     */
+    public static SimpleVariableBinding compile(String oid, String value, SnmpVariableType type) {
+        SimpleVariableBinding binding = new SimpleVariableBinding(oid, value, type);
+        setCompiled(binding, PROP_OID, oid);
+        setCompiled(binding, PROP_VALUE, value);
+        return binding;
+    }
+
+    private static void setCompiled(SimpleVariableBinding binding, String name, String text) {
+        if (!text.contains("${")) {
+            return;
+        }
+        CompoundVariable function = new CompoundVariable();
+        try {
+            function.setParameters(text);
+        } catch (InvalidVariableException e) {
+            throw new IllegalArgumentException("Invalid function in varbind: " + text, e);
+        }
+        if (function.hasFunction()) {
+            binding.setProperty(new FunctionProperty(name, function));
+        }
+    }
+
     public String getOid() {
         return getPropertyAsString(PROP_OID);
     }
@@ -42,6 +74,34 @@ public class SimpleVariableBinding extends AbstractTestElement {
         setProperty(PROP_TYPE, type.name());
     }
 
+    public boolean isOidDynamic() {
+        return getProperty(PROP_OID) instanceof FunctionProperty;
+    }
+
+    public boolean isDynamic() {
+        return isOidDynamic() || getProperty(PROP_VALUE) instanceof FunctionProperty;
+    }
+
+    public String evaluateOid() {
+        return evaluate(getProperty(PROP_OID));
+    }
+
+    public String evaluateValue() {
+        return evaluate(getProperty(PROP_VALUE));
+    }
+
+    // Runs functions on every call, unlike FunctionProperty.getStringValue() which caches per iteration.
+    private static String evaluate(JMeterProperty property) {
+        if (property instanceof FunctionProperty) {
+            return ((CompoundVariable) property.getObjectValue()).execute();
+        }
+        return property.getStringValue();
+    }
+
+    public VariableBinding toVariableBinding() {
+        return new VariableBinding(new OID(getOid()), getType().createVariable(getValue()));
+    }
+
     @Override
     public String getName() {
         return super.getName();
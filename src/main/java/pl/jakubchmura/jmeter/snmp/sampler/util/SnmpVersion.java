@@ -0,0 +1,35 @@
+package pl.jakubchmura.jmeter.snmp.sampler.util;
+
+public enum SnmpVersion {
+
+    V2c("2c"),
+    V3("3");
+
+    private final String name;
+
+    SnmpVersion(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public static String[] getNames() {
+        SnmpVersion[] values = SnmpVersion.values();
+        String[] names = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            names[i] = values[i].getName();
+        }
+        return names;
+    }
+
+    public static SnmpVersion fromName(String name) {
+        for (SnmpVersion value : values()) {
+            if (value.getName().equals(name)) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Unknown SNMP version: " + name);
+    }
+}
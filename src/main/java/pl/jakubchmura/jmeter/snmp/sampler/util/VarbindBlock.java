@@ -0,0 +1,142 @@
+package pl.jakubchmura.jmeter.snmp.sampler.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Variable bindings stored as text, one {@code oid,value,type} line per binding. Commas inside JMeter function calls
+ * of the OID and inside the value are kept, backslashes and line breaks of the value are escaped. Empty lines and
+ * lines starting with {@code #} are skipped.
+ */
+public class VarbindBlock {
+
+    private static final ConcurrentHashMap<String, FileRows> files = new ConcurrentHashMap<>();
+
+    private VarbindBlock() {
+    }
+
+    /**
+     * @param rows rows of OID, value and type name
+     */
+    public static String format(List<String[]> rows) {
+        StringBuilder block = new StringBuilder();
+        for (String[] row : rows) {
+            block.append(row[0]).append(',').append(escape(row[1])).append(',').append(row[2]).append('\n');
+        }
+        return block.toString();
+    }
+
+    public static List<String[]> parse(String block) {
+        List<String[]> rows = new ArrayList<>();
+        int lineNumber = 0;
+        for (String line : block.split("\r?\n")) {
+            lineNumber++;
+            if (line.trim().isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            int oidEnd = findSeparator(line);
+            int typeStart = line.lastIndexOf(',');
+            if (oidEnd < 0 || typeStart <= oidEnd) {
+                throw new IllegalArgumentException("Line " + lineNumber + " is not oid,value,type: " + line);
+            }
+            rows.add(new String[]{
+                    line.substring(0, oidEnd).trim(),
+                    unescape(line.substring(oidEnd + 1, typeStart)),
+                    line.substring(typeStart + 1).trim()});
+        }
+        return rows;
+    }
+
+    /**
+     * Reads the rows of a file, which is parsed again only when it has been modified. The rows returned are copies
+     * the caller may modify.
+     */
+    public static List<String[]> read(String path) throws IOException {
+        File file = new File(path).getCanonicalFile();
+        long modified = file.lastModified();
+        long length = file.length();
+        FileRows cached = files.get(file.getPath());
+        if (cached != null && cached.modified == modified && cached.length == length) {
+            return copy(cached.rows);
+        }
+        String block = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        List<String[]> rows = parse(block);
+        files.put(file.getPath(), new FileRows(modified, length, rows));
+        return copy(rows);
+    }
+
+    private static List<String[]> copy(List<String[]> rows) {
+        List<String[]> copy = new ArrayList<>(rows.size());
+        for (String[] row : rows) {
+            copy.add(row.clone());
+        }
+        return copy;
+    }
+
+    public static List<SimpleVariableBinding> toBindings(List<String[]> rows) {
+        List<SimpleVariableBinding> bindings = new ArrayList<>(rows.size());
+        for (String[] row : rows) {
+            bindings.add(SimpleVariableBinding.compile(row[0], row[1], SnmpVariableType.valueOf(row[2])));
+        }
+        return bindings;
+    }
+
+    // first comma outside of ${...}
+    private static int findSeparator(String line) {
+        int depth = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '$' && i + 1 < line.length() && line.charAt(i + 1) == '{') {
+                depth++;
+                i++;
+            } else if (c == '}' && depth > 0) {
+                depth--;
+            } else if (c == ',' && depth == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String escape(String value) {
+        if (value.indexOf('\\') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return value.replace("\\", "\\\\").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    private static String unescape(String value) {
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+        StringBuilder result = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                result.append(next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    private static class FileRows {
+
+        private final long modified;
+        private final long length;
+        private final List<String[]> rows;
+
+        private FileRows(long modified, long length, List<String[]> rows) {
+            this.modified = modified;
+            this.length = length;
+            this.rows = rows;
+        }
+    }
+}
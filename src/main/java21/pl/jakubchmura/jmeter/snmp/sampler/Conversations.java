@@ -0,0 +1,21 @@
+package pl.jakubchmura.jmeter.snmp.sampler;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Threads running the blocking send and await cycles of conversations, one virtual thread per conversation.
+ */
+public final class Conversations {
+
+    private Conversations() {
+    }
+
+    public static boolean isVirtual() {
+        return true;
+    }
+
+    public static ExecutorService newExecutor(String name) {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 1).factory());
+    }
+}